@@ -0,0 +1,310 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
+
+
+public class BatchRunner {
+	/*
+	 * Batch [dataset] mode of CreateStego.
+	 *
+	 * Creating a steganalysis dataset needs many stego images [covers x methods x payloads]. Instead of one java process
+	 * per stego image, all jobs run in one process on a fixed number of worker threads.
+	 * A job is one cover image, one method and one payload; its stego image is stored as:
+	 * 		<cover file name>.<payload>.<method>.bmp   like test.bmp.0.4bpp.LSBM.bmp
+	 * next to the cover image, or in the output directory if one is given [with a change map, also <stego file>.changes].
+	 * In the output directory the path of the cover relative to the covers directory or to the manifest is kept
+	 * [a/test.bmp -> <output directory>/a/test.bmp.0.4bpp.LSBM.bmp, see coverKey], so covers with the same file name
+	 * in different directories do not overwrite each other.
+	 * Each cover image is decoded only one time [see CoverImage]: one worker creates all stego images of a cover.
+	 *
+	 * For every job one status line is printed when the job is finished:
+	 * 		OK      cover method payload output time[ms]
+	 * 		FAILED  cover method payload error  time[ms]
+	 *
+	 * With a seed, every job uses its own seed made from the seed, the relative cover path, the method and the payload,
+	 * so the stego image of a job does not depend on the number of threads or on the other jobs.
+	 */
+
+	public static int run(File Covers, String[] Methods, String[] Payloads, Long Seed, boolean ExactLength, int Threads, File OutputDirectory) throws IOException {
+		return run(Covers, Methods, Payloads, Seed, ExactLength, Threads, OutputDirectory, false);
+	}
+
+	public static int run(File Covers, String[] Methods, String[] Payloads, Long Seed, boolean ExactLength, int Threads, File OutputDirectory, boolean Patch) throws IOException {
+		return run(Covers, Methods, Payloads, Seed, ExactLength, Threads, OutputDirectory, Patch, false);
+	}
+
+	public static int run(File Covers, String[] Methods, String[] Payloads, Long Seed, boolean ExactLength, int Threads, File OutputDirectory, boolean Patch, boolean Sweep) throws IOException {
+		return run(Covers, Methods, Payloads, Seed, ExactLength, Threads, OutputDirectory, Patch, Sweep, false);
+	}
+
+	public static int run(File Covers, String[] Methods, String[] Payloads, Long Seed, boolean ExactLength, int Threads, File OutputDirectory, boolean Patch, boolean Sweep, boolean WithChangeMap) throws IOException {
+		/*
+		 * Params:
+		 * 		1- Covers: a directory [all bitmap images of it, except the stego images created by CreateStego]
+		 * 		    or a manifest [text file with one cover image path per line; empty lines and lines starting with # are skipped]
+		 * 		2- Methods: methods like {"LSB", "LSBPP"}
+		 * 		3- Payloads: message lengths in bit like {"1000"} or embedding rates in bit per pixel like {"0.1bpp", "0.4bpp"}
+		 * 		4- Seed: base seed of the jobs, or null for unseeded random numbers
+		 * 		5- ExactLength: embed exactly MessageLength bits [see EmbeddingKey]
+		 * 		6- Threads: number of worker threads
+		 * 		7- OutputDirectory: directory of the stego images, or null to store them next to the covers
+		 * 		8- Patch: copy the cover file and write only the changed bytes [see BmpCodec.patch]
+		 * 		9- Sweep: all payloads of a cover and a method are embedded in one pass with nested changes [see PayloadSweep];
+		 * 		    ExactLength is not used [each payload embeds exactly its message length]
+		 * 		10- WithChangeMap: the change map of each stego image is written next to it [see ChangeMap; not with Sweep]
+		 * Returns the number of failed jobs.
+		 */
+		if (Sweep && WithChangeMap)
+			throw new IllegalArgumentException("The change map is not available in the sweep mode");
+		List<File> cover_files = listCovers(Covers);
+		List<String> cover_keys = new ArrayList<String>();
+		for (File cover : cover_files)
+			cover_keys.add(coverKey(Covers, cover));
+		for (String method : Methods){
+			if (Sweep)
+				PayloadSweep.scanEmbedder(method);
+			else if (!CreateStego.isMethodName(method))
+				throw new IllegalArgumentException("Unknown method: " + method);
+		}
+		for (String payload : Payloads)
+			parsePayload(payload);
+		if (OutputDirectory != null)
+			OutputDirectory.mkdirs();
+
+		ExecutorService pool = Executors.newFixedThreadPool(Threads);
+		AtomicInteger failed = new AtomicInteger();
+		for (int i = 0; i < cover_files.size(); i++){
+			File cover = cover_files.get(i);
+			String key = cover_keys.get(i);
+			pool.execute(() -> failed.addAndGet(runCover(cover, key, Methods, Payloads, Seed, ExactLength, OutputDirectory, Patch, Sweep, WithChangeMap)));
+		}
+		pool.shutdown();
+		try{
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		}
+		catch (InterruptedException err)
+		{
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		int jobs = cover_files.size()*Methods.length*Payloads.length;
+		System.out.println("Finished " + jobs + " jobs, " + failed.get() + " failed");
+		return failed.get();
+	}
+
+	static int runCover(File cover, String key, String[] Methods, String[] Payloads, Long Seed, boolean ExactLength, File OutputDirectory, boolean Patch, boolean Sweep, boolean WithChangeMap) {
+		// All jobs of one cover image [key: see coverKey]; returns the number of failed jobs
+		long start = System.nanoTime();
+		CoverImage cover_image;
+		try{
+			cover_image = CoverImage.read(cover);
+		}
+		catch (Exception err)
+		{
+			for (String method : Methods){
+				for (String payload : Payloads)
+					report("FAILED", cover, method.trim().toUpperCase(), payload.trim(), err.toString(), start);
+			}
+			return Methods.length*Payloads.length;
+		}
+		int failed = 0;
+		for (String method : Methods){
+			if (Sweep){
+				failed += runSweep(cover, key, cover_image, method.trim().toUpperCase(), Payloads, Seed, OutputDirectory, Patch);
+				continue;
+			}
+			for (String payload : Payloads){
+				if (!runJob(cover, key, cover_image, method.trim().toUpperCase(), payload.trim(), Seed, ExactLength, OutputDirectory, Patch, WithChangeMap))
+					failed++;
+			}
+		}
+		return failed;
+	}
+
+	static boolean runJob(File cover, String key, CoverImage cover_image, String method, String payload, Long Seed, boolean ExactLength, File OutputDirectory, boolean Patch, boolean WithChangeMap) {
+		long start = System.nanoTime();
+		try{
+			RandomGenerator rand;
+			if (Seed == null)
+				rand = new SplittableRandom();
+			else
+				rand = new SplittableRandom(jobSeed(Seed, key, method, payload));
+
+			EmbeddingReport embedding_report = null;
+			if (WithChangeMap)
+				embedding_report = EmbeddingReport.withChangeMap(cover_image.width(), cover_image.height(), cover_image.channels());
+			PixelPlanes stego = cover_image.embed(method, messageLength(payload, cover_image), rand, ExactLength, false, embedding_report);
+
+			File outputfile = outputFile(cover, key, method, payload, OutputDirectory);
+			if (Patch)
+				stego.writePatched(outputfile);
+			else
+				stego.write(outputfile);
+			if (WithChangeMap)
+				embedding_report.changeMap().write(ChangeMap.file(outputfile));
+			report("OK", cover, method, payload, outputfile.getPath(), start);
+			return true;
+		}
+		catch (Exception err)
+		{
+			report("FAILED", cover, method, payload, err.toString(), start);
+			return false;
+		}
+	}
+
+	static int runSweep(File cover, String key, CoverImage cover_image, String method, String[] Payloads, Long Seed, File OutputDirectory, boolean Patch) {
+		// All payloads of one cover and one method in one pass [see PayloadSweep]; returns the number of failed jobs
+		long start = System.nanoTime();
+		boolean[] written = new boolean[Payloads.length];
+		try{
+			RandomGenerator rand;
+			if (Seed == null)
+				rand = new SplittableRandom();
+			else
+				rand = new SplittableRandom(jobSeed(Seed, key, method, "sweep"));
+
+			int[] MessageLengths = new int[Payloads.length];
+			for (int i = 0; i < Payloads.length; i++)
+				MessageLengths[i] = messageLength(Payloads[i], cover_image);
+			PayloadSweep.sweep(PayloadSweep.scanEmbedder(method), cover_image.copy(), MessageLengths, rand, (index, stego, report) -> {
+				File outputfile = outputFile(cover, key, method, Payloads[index].trim(), OutputDirectory);
+				if (Patch)
+					stego.writePatched(outputfile);
+				else
+					stego.write(outputfile);
+				written[index] = true;
+				report("OK", cover, method, Payloads[index].trim(), outputfile.getPath(), start);
+			});
+			return 0;
+		}
+		catch (Exception err)
+		{
+			int failed = 0;
+			for (int i = 0; i < Payloads.length; i++){
+				if (!written[i]){
+					report("FAILED", cover, method, Payloads[i].trim(), err.toString(), start);
+					failed++;
+				}
+			}
+			return failed;
+		}
+	}
+
+	static File outputFile(File cover, String key, String method, String payload, File OutputDirectory) {
+		// Next to the cover, or at the relative path key of the cover in OutputDirectory [its directories are created]
+		if (OutputDirectory == null)
+			return new File(cover.getAbsoluteFile().getParentFile(), cover.getName() + "." + payload + "." + method + ".bmp");
+		File outputfile = new File(OutputDirectory, key + "." + payload + "." + method + ".bmp");
+		outputfile.getParentFile().mkdirs();
+		return outputfile;
+	}
+
+	static long jobSeed(long Seed, String key, String method, String payload) {
+		// The golden ratio multiplier spreads the hash of the job over all bits of the seed
+		String job = key + "/" + method + "/" + payload;
+		return Seed + 0x9E3779B97F4A7C15L * job.hashCode();
+	}
+
+	static int messageLength(String payload, CoverImage cover_image) {
+		return messageLength(payload, cover_image.width(), cover_image.height());
+	}
+
+	static int messageLength(String payload, int width, int height) {
+		// Message length in bit: either given directly, or calculated from the embedding rate [bit per pixel]
+		double value = parsePayload(payload);
+		if (payload.trim().toLowerCase().endsWith("bpp"))
+			return (int) Math.round(value * width * height);
+		return (int) value;
+	}
+
+	static double parsePayload(String payload) {
+		String text = payload.trim().toLowerCase();
+		try{
+			if (text.endsWith("bpp"))
+				return Double.parseDouble(text.substring(0, text.length() - 3));
+			return Integer.parseInt(text);
+		}
+		catch (NumberFormatException err)
+		{
+			throw new IllegalArgumentException("Payload should be a message length in bit like 1000 or an embedding rate like 0.4bpp: " + payload);
+		}
+	}
+
+	static String coverKey(File Covers, File cover) throws IOException {
+		/*
+		 * Params:
+		 * 		1- Covers: the covers directory or the manifest [see run]
+		 * 		2- cover: one cover image of Covers [see listCovers]
+		 * Returns the path of the cover relative to the covers directory [or to the directory of the manifest] with / between
+		 * the names, like a/test.bmp; a cover outside of it gets its whole canonical path without the root, like data/a/test.bmp.
+		 * For a cover in the directory itself it is the file name, so the seeds do not depend on where the directory is.
+		 */
+		File base = Covers.isDirectory() ? Covers : Covers.getAbsoluteFile().getParentFile();
+		String base_path = base.getCanonicalPath();
+		String cover_path = cover.getCanonicalPath();
+		String key;
+		if (cover_path.startsWith(base_path + File.separator))
+			key = cover_path.substring(base_path.length() + 1);
+		else{
+			File root = cover.getCanonicalFile().toPath().getRoot().toFile();
+			key = cover_path.substring(root.getPath().length());
+		}
+		return key.replace(File.separatorChar, '/');
+	}
+
+	static List<File> listCovers(File Covers) throws IOException {
+		return listImages(Covers, true);
+	}
+
+	static List<File> listImages(File Covers, boolean SkipStego) throws IOException {
+		// SkipStego: the stego images of a directory [named like test.bmp.LSB.bmp] are skipped
+		List<File> cover_files = new ArrayList<File>();
+		if (Covers.isDirectory()){
+			File[] files = Covers.listFiles();
+			if (files != null){
+				Arrays.sort(files);
+				for (File file : files){
+					String name = file.getName().toLowerCase();
+					if (file.isFile() && name.endsWith(".bmp") && !(SkipStego && name.substring(0, name.length() - 4).contains(".bmp")))
+						cover_files.add(file);
+				}
+			}
+		}
+		else{
+			for (String line : Files.readAllLines(Covers.toPath())){
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				File file = new File(line);
+				if (!file.isAbsolute())
+					file = new File(Covers.getAbsoluteFile().getParentFile(), line);
+				cover_files.add(file);
+			}
+		}
+		return cover_files;
+	}
+
+	private static synchronized void report(String status, File cover, String method, String payload, String result, long start) {
+		long time = (System.nanoTime() - start) / 1000000;
+		System.out.println(status + "\t" + cover.getPath() + "\t" + method + "\t" + payload + "\t" + result + "\t" + time + "ms");
+	}
+}
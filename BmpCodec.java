@@ -0,0 +1,308 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.io.*;
+import java.awt.image.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+
+public class BmpCodec {
+	/*
+	 * Bitmap reader / writer of PixelPlanes without ImageIO.
+	 *
+	 * An uncompressed bitmap file is a file header [14 bytes], an info header [BITMAPINFOHEADER or a later version],
+	 * an optional palette and the pixel array at a fixed offset. Each row of the pixel array is padded to a multiple of
+	 * 4 bytes, and the rows are stored bottom-up [unless the height in the header is negative].
+	 *
+	 * read: the file is memory mapped [FileChannel.map] and each row is copied once, with one bulk copy, from the mapped
+	 * pixel array to its top-down position in the samples of PixelPlanes [no plugin lookup, no intermediate image and no
+	 * color conversion]. The headers and the palette are kept, so the stego image has exactly the header of its cover.
+	 * write: the headers are written first and then the rows are streamed from the samples in the file order.
+	 * patch: the cover file is copied [FileChannel.transferTo] and only the bytes that were changed by the embedder are
+	 * written at their offsets in the copy. At small payloads this writes a few KB instead of the whole image.
+	 *
+	 * Only 24 bit color and 8 bit gray palette [entry i is (i, i, i)] bitmaps without compression are handled here;
+	 * read returns null for any other file, and PixelPlanes falls back to ImageIO.
+	 */
+
+	static final int FILE_HEADER_SIZE = 14;
+	static final int INFO_HEADER_SIZE = 40;
+	// Rows are written in blocks of about this many bytes
+	static final int WRITE_BLOCK = 1 << 20;
+	// patch: changed bytes closer than this are written together [the unchanged bytes between them are written again]
+	static final int PATCH_GAP = 32;
+
+	public static PixelPlanes read(File file) throws IOException {
+		/*
+		 * Params:
+		 * 		1- file: input bitmap image like /User/kazemmit/Documents/test.bmp
+		 * Returns the samples of the image, or null if the file is not an uncompressed 24 bit or 8 bit gray bitmap.
+		 */
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			long size = channel.size();
+			Layout layout = layout(channel);
+			// A byte buffer [and the samples of an image] can not be larger than 2 GB
+			if (layout == null || size > Integer.MAX_VALUE || (long) layout.width*layout.height*layout.channels > Integer.MAX_VALUE)
+				return null;
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+			int width = layout.width;
+			int height = layout.height;
+			boolean gray = layout.channels == 1;
+			BufferedImage image = new BufferedImage(width, height, gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR);
+			byte[] samples = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+			int row_length = width*layout.channels;
+			for (int yPixel = 0; yPixel < height; yPixel++)
+				buffer.get((int) layout.rowOffset(yPixel), samples, yPixel*row_length, row_length);
+
+			return PixelPlanes.of(image, gray, layout.header, file);
+		}
+	}
+
+	static final class Layout {
+		// Pixel array of an uncompressed 24 bit or 8 bit gray bitmap file
+		int width;
+		int height;
+		int channels;
+		boolean bottom_up;
+		// Offset of the pixel array and length of each row [with padding] in the file
+		long offset;
+		long stride;
+		// Headers and palette [all bytes before the pixel array]
+		byte[] header;
+
+		long rowOffset(int yPixel) {
+			// Offset of row yPixel [top-down row number] in the file
+			return offset + stride*(bottom_up ? height - 1 - yPixel : yPixel);
+		}
+	}
+
+	static Layout layout(FileChannel channel) throws IOException {
+		/*
+		 * Params:
+		 * 		1- channel: an opened bitmap file
+		 * Returns the layout of the pixel array, or null if the file is not an uncompressed 24 bit or 8 bit gray bitmap.
+		 * Only the headers are read, so the file can be larger than 2 GB [see StreamingStego].
+		 */
+		long size = channel.size();
+		if (size < FILE_HEADER_SIZE + INFO_HEADER_SIZE)
+			return null;
+		ByteBuffer buffer = ByteBuffer.allocate(FILE_HEADER_SIZE + INFO_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, buffer, 0);
+
+		if (buffer.get(0) != 'B' || buffer.get(1) != 'M')
+			return null;
+		long offset = buffer.getInt(10) & 0xFFFFFFFFL;
+		int info_size = buffer.getInt(14);
+		int width = buffer.getInt(18);
+		int height_field = buffer.getInt(22);
+		int bit_count = buffer.getShort(28);
+		int compression = buffer.getInt(30);
+		int colors_used = buffer.getInt(46);
+		// Compression 0: BI_RGB [uncompressed]
+		if (info_size < INFO_HEADER_SIZE || compression != 0 || width <= 0 || height_field == 0 || height_field == Integer.MIN_VALUE)
+			return null;
+		if (bit_count != 24 && bit_count != 8)
+			return null;
+		if (offset < FILE_HEADER_SIZE + INFO_HEADER_SIZE || offset > size || offset > Integer.MAX_VALUE)
+			return null;
+
+		ByteBuffer header = ByteBuffer.allocate((int) offset).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, header, 0);
+		boolean gray = bit_count == 8;
+		if (gray && !isGrayPalette(header, FILE_HEADER_SIZE + info_size, colors_used, offset))
+			return null;
+
+		Layout layout = new Layout();
+		layout.width = width;
+		layout.height = Math.abs(height_field);
+		layout.channels = gray ? 1 : 3;
+		layout.bottom_up = height_field > 0;
+		layout.offset = offset;
+		layout.stride = rowStride(width, layout.channels);
+		layout.header = header.array();
+		if (offset + layout.stride*layout.height > size)
+			return null;
+		return layout;
+	}
+
+	public static void write(PixelPlanes planes, File file) throws IOException {
+		/*
+		 * Params:
+		 * 		1- planes: samples of the image
+		 * 		2- file: output bitmap image
+		 * The header of the cover image is used if the planes were read by this class; otherwise a BITMAPINFOHEADER
+		 * [and a gray palette for gray scale images] is created.
+		 */
+		byte[] header = planes.header;
+		if (header == null)
+			header = createHeader(planes);
+		ByteBuffer info = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+		boolean bottom_up = info.getInt(22) > 0;
+
+		int row_length = planes.width*planes.channels;
+		int stride = (int) rowStride(planes.width, planes.channels);
+		int rows_per_block = Math.max(1, WRITE_BLOCK / stride);
+		ByteBuffer block = ByteBuffer.allocate(rows_per_block*stride);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+			writeFully(channel, ByteBuffer.wrap(header));
+			for (int row = 0; row < planes.height; row++){
+				int yPixel = bottom_up ? planes.height - 1 - row : row;
+				// The padding bytes of the block stay zero
+				block.put(planes.samples, yPixel*row_length, row_length);
+				block.position(block.position() + stride - row_length);
+				if (!block.hasRemaining() || row == planes.height - 1){
+					block.flip();
+					writeFully(channel, block);
+					block.clear();
+				}
+			}
+		}
+	}
+
+	public static long patch(PixelPlanes planes, File file) throws IOException {
+		/*
+		 * Params:
+		 * 		1- planes: samples of the stego image, read from a cover bitmap file by BmpCodec.read
+		 * 		2- file: output bitmap image
+		 * Copies the cover file to file and writes only the changed samples; returns the number of written pixel bytes.
+		 * The output is the cover file with the new samples [padding bytes and any data after the pixel array are kept].
+		 * If the cover file was changed after it was read, the image is written by write.
+		 */
+		File cover = planes.source;
+		if (cover.getCanonicalFile().equals(file.getCanonicalFile()))
+			throw new IOException("The stego image can not be stored in its cover file: " + file);
+		try (FileChannel input = FileChannel.open(cover.toPath(), StandardOpenOption.READ)){
+			long size = input.size();
+			byte[] header = planes.header;
+			ByteBuffer info = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+			boolean bottom_up = info.getInt(22) > 0;
+			long stride = rowStride(planes.width, planes.channels);
+			long offset = header.length;
+			MappedByteBuffer buffer = null;
+			if (size >= offset + stride*planes.height){
+				buffer = input.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				byte[] cover_header = new byte[header.length];
+				buffer.get(0, cover_header);
+				if (!Arrays.equals(header, cover_header))
+					buffer = null;
+			}
+			if (buffer == null){
+				write(planes, file);
+				return (long) planes.width*planes.height*planes.channels;
+			}
+
+			long written = 0;
+			try (FileChannel output = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+				// Copy of the cover file [the file system may do it without reading the data into the process]
+				long position = 0;
+				while (position < size)
+					position += input.transferTo(position, size - position, output);
+
+				int row_length = planes.width*planes.channels;
+				for (int yPixel = 0; yPixel < planes.height; yPixel++){
+					int file_row = bottom_up ? planes.height - 1 - yPixel : yPixel;
+					int file_start = (int) (offset + stride*file_row);
+					int row_start = yPixel*row_length;
+					int i = 0;
+					while (i < row_length){
+						// First changed byte from i [mismatch is vectorized by the JVM]
+						int first = ByteBuffer.wrap(planes.samples, row_start + i, row_length - i).slice()
+								.mismatch(buffer.slice(file_start + i, row_length - i));
+						if (first < 0)
+							break;
+						first += i;
+						// The run ends when PATCH_GAP bytes in a row are unchanged
+						int last = first;
+						for (int j = first + 1; j < row_length && j - last <= PATCH_GAP; j++){
+							if (planes.samples[row_start + j] != buffer.get(file_start + j))
+								last = j;
+						}
+						ByteBuffer changes = ByteBuffer.wrap(planes.samples, row_start + first, last - first + 1).slice();
+						while (changes.hasRemaining())
+							output.write(changes, file_start + first + changes.position());
+						written += last - first + 1;
+						i = last + 1;
+					}
+				}
+			}
+			return written;
+		}
+	}
+
+	static long rowStride(int width, int channels) {
+		// Each row is padded to a multiple of 4 bytes
+		return ((long) width*channels + 3) & ~3L;
+	}
+
+	static byte[] createHeader(PixelPlanes planes) {
+		int palette_size = planes.isGrayscale ? 256*4 : 0;
+		int offset = FILE_HEADER_SIZE + INFO_HEADER_SIZE + palette_size;
+		long image_size = rowStride(planes.width, planes.channels)*planes.height;
+		ByteBuffer header = ByteBuffer.allocate(offset).order(ByteOrder.LITTLE_ENDIAN);
+		header.put((byte) 'B').put((byte) 'M');
+		header.putInt((int) (offset + image_size));
+		header.putInt(0);
+		header.putInt(offset);
+		header.putInt(INFO_HEADER_SIZE);
+		header.putInt(planes.width);
+		header.putInt(planes.height);
+		header.putShort((short) 1);
+		header.putShort((short) (planes.channels*8));
+		header.putInt(0);
+		header.putInt((int) image_size);
+		header.putInt(0);
+		header.putInt(0);
+		header.putInt(planes.isGrayscale ? 256 : 0);
+		header.putInt(0);
+		if (planes.isGrayscale){
+			for (int i = 0; i < 256; i++)
+				header.put((byte) i).put((byte) i).put((byte) i).put((byte) 0);
+		}
+		return header.array();
+	}
+
+	private static boolean isGrayPalette(ByteBuffer buffer, int palette_offset, int colors_used, long offset) {
+		// Palette entries are [blue, green, red, reserved]; the index is the gray value only if entry i is (i, i, i)
+		int colors = colors_used == 0 ? 256 : colors_used;
+		if (colors != 256 || palette_offset + 256L*4 > offset)
+			return false;
+		for (int i = 0; i < 256; i++){
+			int position = palette_offset + i*4;
+			if ((buffer.get(position) & 0xFF) != i || (buffer.get(position + 1) & 0xFF) != i || (buffer.get(position + 2) & 0xFF) != i)
+				return false;
+		}
+		return true;
+	}
+
+	static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()){
+			int count = channel.read(buffer, position + buffer.position());
+			if (count < 0)
+				throw new EOFException("Unexpected end of the bitmap file");
+		}
+	}
+
+	static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer, position + buffer.position());
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+}
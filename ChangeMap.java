@@ -0,0 +1,380 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+
+public class ChangeMap {
+	/*
+	 * The changed samples of a stego image: a set of (pixel, channel, delta) where delta = stego value - cover value.
+	 *
+	 * The map is collected by the embedders while they change the samples [see EmbeddingReport.withChangeMap], so
+	 * the cover and the stego image do not have to be compared again. The changes are sorted by the sample index
+	 * [pixel*channels + channel, see PixelPlanes] and run-length encoded: every change is the number of unchanged
+	 * samples before it [the run] and its delta, stored as one variable length integer
+	 * 		(run << 2) | code   code 0: delta -1, code 1: delta +1, code 2: other delta [a second integer, zigzag encoded]
+	 * so a +-1 change [all methods of CreateStego] takes 1 to 3 bytes at low payloads, instead of a whole image.
+	 *
+	 * The map of a stego image is stored next to it as <stego file>.changes [see write and read].
+	 *
+	 * Example:
+	 * 		ChangeMap changes = ChangeMap.read(new File("test.bmp.LSBM.bmp.changes"));
+	 * 		changes.forEach(0, 0, 64, 64, (pixel, channel, delta) -> System.out.println(pixel + " " + channel + " " + delta));
+	 */
+
+	public final int width;
+	public final int height;
+	public final int channels;
+	// Number of changed samples
+	public final int size;
+	private final byte[] data;
+	// Decoded changes [sample index and delta], for the queries
+	private int[] samples;
+	private int[] deltas;
+
+	private static final int MAGIC = 0x434D4150; // CMAP
+	private static final int VERSION = 1;
+
+	private ChangeMap(int width, int height, int channels, int size, byte[] data) {
+		this.width = width;
+		this.height = height;
+		this.channels = channels;
+		this.size = size;
+		this.data = data;
+	}
+
+	public interface Visitor {
+		void change(int pixel, int channel, int delta);
+	}
+
+	static final class Builder {
+		/*
+		 * Changes in the order of the embedding process. They are packed as (sample << 9) | (delta + 255) in a buffer of at
+		 * most CHUNK changes; a full buffer is sorted and encoded like a change map [a chunk], so a builder needs about
+		 * the size of the encoded changes instead of 8 bytes per change. build merges the chunks.
+		 */
+		private static final int CHUNK = 1 << 16;
+		final int width;
+		final int height;
+		final int channels;
+		private long[] changes = new long[16];
+		private int count;
+		private final List<ChangeMap> chunks = new ArrayList<>();
+
+		Builder(int width, int height, int channels) {
+			this.width = width;
+			this.height = height;
+			this.channels = channels;
+		}
+
+		void add(int sample, int delta) {
+			if (count == changes.length){
+				if (count == CHUNK)
+					flush();
+				else
+					changes = Arrays.copyOf(changes, count*2);
+			}
+			changes[count++] = ((long) sample << 9) | (delta + 255);
+		}
+
+		private void flush() {
+			// Encodes the buffer as a new chunk: sorted by the sample index, several changes of one sample are added
+			if (count == 0)
+				return;
+			Arrays.sort(changes, 0, count);
+			Encoder encoder = new Encoder(width, height, channels);
+			int i = 0;
+			while (i < count){
+				int sample = (int) (changes[i] >>> 9);
+				int delta = 0;
+				for (; i < count && (int) (changes[i] >>> 9) == sample; i++)
+					delta += (int) (changes[i] & 0x1FF) - 255;
+				if (delta != 0)
+					encoder.add(sample, delta);
+			}
+			chunks.add(encoder.build());
+			count = 0;
+		}
+
+		void add(Builder other) {
+			// The chunks are not changed after they are encoded, so they are shared
+			other.flush();
+			chunks.addAll(other.chunks);
+		}
+
+		Builder copy() {
+			Builder copy = new Builder(width, height, channels);
+			copy.add(this);
+			return copy;
+		}
+
+		ChangeMap build() {
+			// Merge of the chunks by the sample index; a sample which is in several chunks is added [and dropped if it is the cover value again]
+			flush();
+			if (chunks.size() == 1)
+				return chunks.get(0);
+			PriorityQueue<Reader> readers = new PriorityQueue<>((reader_1, reader_2) -> Integer.compare(reader_1.sample, reader_2.sample));
+			for (ChangeMap chunk : chunks){
+				Reader reader = new Reader(chunk);
+				if (reader.next())
+					readers.add(reader);
+			}
+			Encoder encoder = new Encoder(width, height, channels);
+			while (!readers.isEmpty()){
+				int sample = readers.peek().sample;
+				int delta = 0;
+				while (!readers.isEmpty() && readers.peek().sample == sample){
+					Reader reader = readers.poll();
+					delta += reader.delta;
+					if (reader.next())
+						readers.add(reader);
+				}
+				if (delta != 0)
+					encoder.add(sample, delta);
+			}
+			return encoder.build();
+		}
+	}
+
+	private static final class Reader {
+		// Decodes the changes of a change map one by one [sample and delta of the current change]
+		final byte[] data;
+		final int[] position = {0};
+		int remaining;
+		int sample = -1;
+		int delta;
+
+		Reader(ChangeMap changes) {
+			this.data = changes.data;
+			this.remaining = changes.size;
+		}
+
+		boolean next() {
+			if (remaining == 0)
+				return false;
+			remaining--;
+			long token = readVarLong(data, position);
+			int code = (int) (token & 3);
+			sample += 1 + (int) (token >>> 2);
+			if (code == 0)
+				delta = -1;
+			else if (code == 1)
+				delta = 1;
+			else{
+				long zigzag = readVarLong(data, position);
+				delta = (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+			}
+			return true;
+		}
+	}
+
+	private static final class Encoder {
+		// Changes should be added in increasing order of the sample index
+		final int width;
+		final int height;
+		final int channels;
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		int size;
+		int next_sample;
+
+		Encoder(int width, int height, int channels) {
+			this.width = width;
+			this.height = height;
+			this.channels = channels;
+		}
+
+		void add(int sample, int delta) {
+			long run = sample - next_sample;
+			if (delta == -1 || delta == 1)
+				writeVarLong(data, (run << 2) | (delta == 1 ? 1 : 0));
+			else{
+				writeVarLong(data, (run << 2) | 2);
+				writeVarLong(data, (delta << 1) ^ (delta >> 31));
+			}
+			next_sample = sample + 1;
+			size++;
+		}
+
+		ChangeMap build() {
+			return new ChangeMap(width, height, channels, size, data.toByteArray());
+		}
+	}
+
+	public static ChangeMap diff(PixelPlanes cover, PixelPlanes stego) {
+		/*
+		 * Params:
+		 * 		1- cover: the cover image
+		 * 		2- stego: the stego image [same size and number of channels]
+		 * The change map of a stego image which was not embedded with a change map [one pass over both images].
+		 */
+		if (cover.width != stego.width || cover.height != stego.height || cover.channels != stego.channels)
+			throw new IllegalArgumentException("The cover and stego images should have the same size and channels");
+		Encoder encoder = new Encoder(cover.width, cover.height, cover.channels);
+		byte[] cover_samples = cover.samples;
+		byte[] stego_samples = stego.samples;
+		for (int position = 0; position < cover_samples.length; position++){
+			if (cover_samples[position] != stego_samples[position])
+				encoder.add(position, (stego_samples[position] & 0xFF) - (cover_samples[position] & 0xFF));
+		}
+		return encoder.build();
+	}
+
+	public static File file(File stego) {
+		// The change map file of a stego image: <stego file>.changes
+		return new File(stego.getPath() + ".changes");
+	}
+
+	public void write(File file) throws IOException {
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(width);
+			output.writeInt(height);
+			output.writeInt(channels);
+			output.writeInt(size);
+			output.writeInt(data.length);
+			output.write(data);
+		}
+	}
+
+	public static ChangeMap read(File file) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+			if (input.readInt() != MAGIC || input.readInt() != VERSION)
+				throw new IOException("Not a change map file: " + file);
+			int width = input.readInt();
+			int height = input.readInt();
+			int channels = input.readInt();
+			int size = input.readInt();
+			byte[] data = new byte[input.readInt()];
+			input.readFully(data);
+			return new ChangeMap(width, height, channels, size, data);
+		}
+	}
+
+	public int encodedSize() {
+		// Size of the run-length encoded changes in byte
+		return data.length;
+	}
+
+	private synchronized void decode() {
+		if (samples != null)
+			return;
+		int[] decoded_samples = new int[size];
+		int[] decoded_deltas = new int[size];
+		Reader reader = new Reader(this);
+		for (int i = 0; reader.next(); i++){
+			decoded_samples[i] = reader.sample;
+			decoded_deltas[i] = reader.delta;
+		}
+		deltas = decoded_deltas;
+		samples = decoded_samples;
+	}
+
+	public void forEach(Visitor visitor) {
+		// All changes, in increasing order of pixel and channel
+		decode();
+		for (int i = 0; i < size; i++)
+			visitor.change(samples[i] / channels, samples[i] % channels, deltas[i]);
+	}
+
+	public void forEach(int x, int y, int w, int h, Visitor visitor) {
+		/*
+		 * Params:
+		 * 		1- x, y, w, h: a rectangle of the image [x, y: top left pixel; w, h: width and height]
+		 * 		2- visitor: gets the changes of the rectangle, row by row
+		 */
+		decode();
+		int first_column = Math.max(0, x);
+		int last_column = Math.min(width, x + w);
+		if (first_column >= last_column)
+			return;
+		for (int yPixel = Math.max(0, y); yPixel < Math.min(height, y + h); yPixel++){
+			int end = (yPixel*width + last_column)*channels;
+			for (int i = firstIndex((yPixel*width + first_column)*channels); i < size && samples[i] < end; i++)
+				visitor.change(samples[i] / channels, samples[i] % channels, deltas[i]);
+		}
+	}
+
+	public int delta(int pixel, int channel) {
+		// Change of one sample [0 if it is not changed]
+		decode();
+		int sample = pixel*channels + channel;
+		int i = firstIndex(sample);
+		return i < size && samples[i] == sample ? deltas[i] : 0;
+	}
+
+	private int firstIndex(int sample) {
+		// Index of the first change at or after sample
+		int i = Arrays.binarySearch(samples, 0, size, sample);
+		return i >= 0 ? i : -i - 1;
+	}
+
+	public long[] changedSamples() {
+		// Number of changed samples of each channel, indexed like PixelPlanes [GRAY, or BLUE, GREEN and RED]
+		long[] changed = new long[channels];
+		forEach((pixel, channel, delta) -> changed[channel]++);
+		return changed;
+	}
+
+	public void apply(PixelPlanes planes) {
+		// Adds the changes to planes [the cover image becomes the stego image]
+		if (planes.width != width || planes.height != height || planes.channels != channels)
+			throw new IllegalArgumentException("The change map is for a " + width + "x" + height + "x" + channels + " image");
+		forEach((pixel, channel, delta) -> planes.set(pixel, channel, planes.get(pixel, channel) + delta));
+	}
+
+	public PixelPlanes render() {
+		/*
+		 * An image of the changes, with the same size and channels as the stego image: unchanged samples are 128, +1 and
+		 * -1 changes are 255 and 0 [other changes are 128 + 128*delta, limited to 0..255]. It can be written like a
+		 * stego image [see PixelPlanes.write].
+		 */
+		byte[] rendered = new byte[width*height*channels];
+		Arrays.fill(rendered, (byte) 128);
+		forEach((pixel, channel, delta) -> rendered[pixel*channels + channel] = (byte) Math.max(0, Math.min(255, 128 + 128*delta)));
+		return PixelPlanes.wrap(rendered, width, height, channels == 1);
+	}
+
+	@Override
+	public String toString() {
+		long[] changed = changedSamples();
+		StringBuilder text = new StringBuilder(width + "x" + height + "x" + channels + ", " + size + " changed samples [");
+		for (int channel = 0; channel < channels; channel++){
+			if (channel > 0)
+				text.append(", ");
+			text.append(changed[channel]);
+		}
+		return text.append("], ").append(data.length).append(" bytes").toString();
+	}
+
+	private static void writeVarLong(ByteArrayOutputStream output, long value) {
+		// 7 bits per byte, the high bit is set if more bytes follow
+		while ((value & ~0x7FL) != 0){
+			output.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		output.write((int) value);
+	}
+
+	private static long readVarLong(byte[] data, int[] position) {
+		long value = 0;
+		for (int shift = 0; ; shift += 7){
+			byte next = data[position[0]++];
+			value |= (long) (next & 0x7F) << shift;
+			if (next >= 0)
+				return value;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.io.*;
+import java.util.random.RandomGenerator;
+
+
+public class CoverImage {
+	/*
+	 * Decode once, embed many.
+	 *
+	 * A cover image is decoded only one time and is never changed. Every stego image is created from a copy of its
+	 * samples, so any number of methods and payloads can be used with one cover [even at the same time from several threads].
+	 * The histograms of the cover image [used by LSB+ and LSB++] are calculated one time and shared by all stego images
+	 * [for a cover file, they are taken from the cache of Histograms if the file was counted before].
+	 *
+	 * Example:
+	 * 		CoverImage cover = CoverImage.read(new File("test.bmp"));
+	 * 		PixelPlanes stego = cover.embed("LSBPP", 1000, new SplittableRandom(1234), false, false);
+	 * 		stego.write(new File("test.bmp.LSBPP.bmp"));
+	 */
+
+	private final PixelPlanes cover;
+	// The file of the cover image [null for images in memory], the key of the cached histograms
+	private final Histograms.Source source;
+	private int[][] histograms;
+
+	private CoverImage(PixelPlanes cover, Histograms.Source source) {
+		this.cover = cover;
+		this.source = source;
+	}
+
+	public static CoverImage read(File file) throws IOException {
+		// The source is taken before the file is decoded [see Histograms.Source]
+		Histograms.Source source = Histograms.Source.of(file);
+		return new CoverImage(PixelPlanes.read(file), source);
+	}
+
+	public static CoverImage of(PixelPlanes planes) {
+		// The samples are copied, so later changes of planes do not change the cover image
+		return new CoverImage(planes.copy(), null);
+	}
+
+	public int width() {
+		return cover.width;
+	}
+
+	public int height() {
+		return cover.height;
+	}
+
+	public int channels() {
+		return cover.channels;
+	}
+
+	public boolean isGrayscale() {
+		return cover.isGrayscale;
+	}
+
+	public int get(int pixel, int channel) {
+		return cover.get(pixel, channel);
+	}
+
+	public PixelPlanes copy() {
+		// A new modifiable copy of the cover image
+		return cover.copy();
+	}
+
+	public synchronized int[][] histograms() {
+		/*
+		 * Returns the histogram of each channel of the cover image, indexed by the channel
+		 * [PixelPlanes.GRAY for gray scale images; PixelPlanes.BLUE, GREEN and RED for color images].
+		 * They are calculated at the first call; the returned arrays should not be changed.
+		 */
+		if (histograms == null){
+			if (source != null)
+				histograms = Histograms.of(source, cover, true).toArray();
+			else
+				histograms = Histograms.of(cover, true).toArray();
+		}
+		return histograms;
+	}
+
+	public PixelPlanes embed(String MethodName, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel) {
+		return embed(MethodName, MessageLength, rand, ExactLength, Parallel, null);
+	}
+
+	public PixelPlanes embed(String MethodName, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, EmbeddingReport report) {
+		/*
+		 * Params:
+		 * 		1- MethodName: LSB, LSBP, LSBPP, LSBM, LSBMR or a registered method [see Embedders]
+		 * 		2- MessageLength: number of bits that you want to hide in the image like 1000
+		 * 		3- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		 * 		4- ExactLength: embed exactly MessageLength bits [see EmbeddingKey]
+		 * 		5- Parallel: use all cores
+		 * 		6- report: the statistics [and the change map] of the embedding process are added to report [or null]
+		 * Returns a new stego image; the cover image is not changed.
+		 */
+		Embedder embedder = Embedders.require(MethodName);
+		PixelPlanes stego = cover.copy();
+		int[][] cover_histograms = null;
+		if (embedder.usesCoverHistograms())
+			cover_histograms = histograms();
+		embedder.embed(stego, MessageLength, rand, ExactLength, Parallel, cover_histograms, report);
+		return stego;
+	}
+}
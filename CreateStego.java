@@ -28,8 +28,11 @@ import java.awt.image.*;
 import javax.imageio.*;
 import java.lang.Object;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Arrays;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
 import java.awt.*;
 import java.awt.color.ColorSpace;
 
@@ -47,15 +50,35 @@ public class CreateStego {
 	 *    2) by using a random process, we simulate the embedding key
 	 *    		therefore, you do not need to provide the embedding key. 
 	 *    3) we just provide the embedding process
-	 *    		therefore, you can use the stego images created by these methods and analyze them. 
+	 *    		therefore, you can use the stego images created by these methods and analyze them.
+	 *    4) all passes visit the pixels in the order they are stored in the image: row by row from the top row to the bottom row,
+	 *    		and from left to right inside each row [LSBMR visits the pixel pairs (2k, 2k+1) of each row in the same order].
+	 *    		therefore, the simulated embedding key [and the pixels locked by LSB++] only depend on this fixed order and the random numbers.
 	 */
 	 
 	 
 	public static void LSB(String BMPFileName, int MessageLength)  {
+		LSB(BMPFileName, MessageLength, new SplittableRandom());
+	}
+
+	public static void LSB(String BMPFileName, int MessageLength, RandomGenerator rand)  {
+		LSB(BMPFileName, MessageLength, rand, false);
+	}
+
+	public static void LSB(String BMPFileName, int MessageLength, RandomGenerator rand, boolean ExactLength)  {
+		LSB(BMPFileName, MessageLength, rand, ExactLength, false);
+	}
+
+	public static void LSB(String BMPFileName, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel)  {
 		 /*
 		 * Params:
 		 * 		1- BMPFileName: input image [path and file name] like /User/kazemmit/Documents/test.bmp
 		 * 		2- MessageLength: number of bits that you want to hide in the input image like 1000
+		 * 		3- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		 * 		    like new SplittableRandom(1234) [a fixed seed gives exactly the same stego image in every run]
+		 * 		4- ExactLength: false: each sample is selected with probability MessageLength/samples [the number of embedded bits is MessageLength on average]
+		 * 		    true: exactly MessageLength samples are selected before embedding [see EmbeddingKey] and only those samples are visited
+		 * 		5- Parallel: true: the bands of the image are processed by all cores [the result is the same as false for the same seed]
 		 * LSB embedding method embeds the message bits [0s and 1s] based on embedding key [this key is used to select a target pixel to embed the message bit]. 
 		 * So, if the message bit [i] is zero, LSB embedding method changes the least significant bit of the pixel to zero;
 		 * and if the message bit [i] is one , LSB embedding method changes the least significant bit of the pixel to one.
@@ -63,103 +86,9 @@ public class CreateStego {
 		 */
 		try{
 			// Read the input image
-			BufferedImage image = ImageIO.read(new File(BMPFileName)); 
-			
-			// Extract the color space of input image (gray or color [RBG])
-			ColorSpace cs = image.getColorModel().getColorSpace();
-			boolean isGrayscale = cs.getType() == ColorSpace.TYPE_GRAY;
-			float Probability = 0;
-
-			// Calculating the embedding rate [bit per pixel]
-			if (isGrayscale)
-				Probability = (float)MessageLength / (image.getWidth()*image.getHeight());
-			else
-				Probability = (float)MessageLength / (image.getWidth()*image.getHeight()*3);
-
-			//System.out.println(isGrayscale);
-
-			for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-			{
-				for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-				{
-					// Extract the gray value of the current pixel [for gray scale images]
-					// Extract the red value of the current pixel [for color images]
-					// Extract the green value of the current pixel [for color images]
-					// Extract the blue value of the current pixel [for color images]
-
-					Color c = new Color(image.getRGB(xPixel, yPixel));
-					int blue_channel = c.getBlue();
-					int green_channel = c.getGreen();
-					int red_channel = c.getRed();
-					int gray = c.getBlue();
-
-					if (isGrayscale){ //For gray scale images
-						Random rand = new Random();
-						float P_select   = rand.nextFloat();
-						if (P_select<=Probability) //Simulating the embedding key
-						{
-							float P_change   = rand.nextFloat();
-							if (P_change <= 0.5){ //Simulating the encrypted message
-								// message bit is 0
-								gray = (gray/2)*2;
-								//System.out.println(0);
-							}
-							else{
-								// message bit is 1
-								gray = (gray/2)*2+1;
-								//System.out.println(1);
-							}
-						}
-						image.setRGB(xPixel, yPixel, 256*256*gray+256*gray+gray);	
-						//c = new Color(image.getRGB(xPixel, yPixel));
-						//System.out.println(c.getBlue());
+			// The pixel values are accessed directly on the byte array of the image [see PixelPlanes]
+			// The embedding process itself is done in memory [see Steganography]
 
-					}
-					else //Color Image
-					{
-						// Blue channel
-						Random rand = new Random();
-						float P_select   = rand.nextFloat();
-						if (P_select<=Probability)//Simulating the embedding key
-						{
-							float P_change   = rand.nextFloat();
-							if (P_change <= 0.5)//Simulating the encrypted message
-								// message bit is 0
-								blue_channel = (blue_channel/2)*2;
-							else
-								// message bit is 1
-								blue_channel = (blue_channel/2)*2+1;
-						}
-						// Red channel
-						rand = new Random();
-						P_select   = rand.nextFloat();
-						if (P_select<=Probability)//Simulating the embedding key
-						{
-							float P_change   = rand.nextFloat();
-							if (P_change <= 0.5)//Simulating the encrypted message
-								// message bit is 0
-								red_channel = (red_channel/2)*2;
-							else
-								// message bit is 1
-								red_channel = (red_channel/2)*2+1;
-						}
-						// Green channel
-						rand = new Random();
-						P_select   = rand.nextFloat();
-						if (P_select<=Probability)//Simulating the embedding key
-						{
-							float P_change   = rand.nextFloat();
-							if (P_change <= 0.5)//Simulating the encrypted message
-								// message bit is 0
-								green_channel = (green_channel/2)*2;
-							else
-								// message bit is 1
-								green_channel = (green_channel/2)*2+1;
-						}
-						image.setRGB(xPixel, yPixel, 256*256*red_channel+256*green_channel+blue_channel);
-					}        
-				}
-			}
 			//The result [stego image] will be stored in the same input path, and the file name will be changed to:
 			// inputfilename.bmp.LSB.bmp
 			
@@ -168,7 +97,7 @@ public class CreateStego {
 			//"/User/kazemmit/Documents/test.bmp.LSB.bmp"
 			
 			File outputfile = new File(BMPFileName+".LSB.bmp");
-			ImageIO.write(image, "bmp", outputfile);
+			Steganography.embed("LSB", new File(BMPFileName), outputfile, MessageLength, rand, ExactLength, Parallel, false);
 		}
 		catch (Exception err)
 		{
@@ -176,12 +105,91 @@ public class CreateStego {
 		}
 	}
 
+	public static long LSB(PixelPlanes planes, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel)  {
+		 /*
+		 * Params:
+		 * 		1- planes: the cover image [see PixelPlanes]; it is changed in place to the stego image
+		 * 		2- MessageLength: number of bits that you want to hide in the input image like 1000
+		 * 		3- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		 * 		    like new SplittableRandom(1234) [a fixed seed gives exactly the same stego image in every run]
+		 * 		4- ExactLength: false: each sample is selected with probability MessageLength/samples [the number of embedded bits is MessageLength on average]
+		 * 		    true: exactly MessageLength samples are selected before embedding [see EmbeddingKey] and only those samples are visited
+		 * 		5- Parallel: true: the bands of the image are processed by all cores [the result is the same as false for the same seed]
+		 * Same embedding process as LSB(BMPFileName, ...) for an image which is already in memory [nothing is read or written].
+		 * Returns the number of embedded message bits.
+		 */
+		return Embedders.LSB.embed(planes, MessageLength, rand, ExactLength, Parallel, null);
+	}
+
+	static int LSB_value(int value, RandomGenerator rand){
+		// LSB embedding of one message bit in one sample
+		float P_change   = rand.nextFloat();
+		if (P_change <= 0.5)//Simulating the encrypted message
+			// message bit is 0
+			return (value/2)*2;
+		else
+			// message bit is 1
+			return (value/2)*2+1;
+	}
+
+	// Number of rows in each band of the image
+	// The bands and their random streams do not depend on the number of threads,
+	// so the stego image of a given seed is the same for serial and parallel runs
+	static final int BAND_ROWS = 64;
+
+	interface BandKernel {
+		// Returns the number of embedded message bits of the band
+		long embed(int first_row, int last_row, RandomGenerator band_rand);
+	}
+
+	static long forEachBand(int height, RandomGenerator rand, boolean Parallel, BandKernel kernel)  {
+		/*
+		 * Params:
+		 * 		1- height: number of rows of the image
+		 * 		2- rand: source of the random numbers; one seed per band is drawn from it [in band order]
+		 * 		3- Parallel: false: the bands are processed one by one, true: the bands are processed on the ForkJoinPool
+		 * 		4- kernel: embedding process of the rows [first_row, last_row) with the random stream of the band
+		 * Returns the number of embedded message bits of all bands.
+		 */
+		int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+		long [] band_seeds = new long[bands];
+		for (int band = 0; band < bands; band++)
+			band_seeds[band] = rand.nextLong();
+
+		IntStream band_stream = IntStream.range(0, bands);
+		if (Parallel)
+			band_stream = band_stream.parallel();
+		return band_stream.mapToLong(band -> kernel.embed(band*BAND_ROWS, Math.min(height, (band+1)*BAND_ROWS), new SplittableRandom(band_seeds[band]))).sum();
+	}
+
+
 	public static void LSBPLUS_LSBPLUSPLUS(String BMPFileName, int MessageLength, boolean LSBPP)  {
+		LSBPLUS_LSBPLUSPLUS(BMPFileName, MessageLength, LSBPP, new SplittableRandom());
+	}
+
+	public static void LSBPLUS_LSBPLUSPLUS(String BMPFileName, int MessageLength, boolean LSBPP, RandomGenerator rand)  {
+		LSBPLUS_LSBPLUSPLUS(BMPFileName, MessageLength, LSBPP, rand, false);
+	}
+
+	public static void LSBPLUS_LSBPLUSPLUS(String BMPFileName, int MessageLength, boolean LSBPP, RandomGenerator rand, boolean ExactLength)  {
+		LSBPLUS_LSBPLUSPLUS(BMPFileName, MessageLength, LSBPP, rand, ExactLength, false);
+	}
+
+	public static void LSBPLUS_LSBPLUSPLUS(String BMPFileName, int MessageLength, boolean LSBPP, RandomGenerator rand, boolean ExactLength, boolean Parallel)  {
 		/*
 		* Params:
 		* 		1- BMPFileName: input image [path and file name] like /User/kazemmit/Documents/test.bmp
 		* 		2- MessageLength: number of bits that you want to hide in the input image like 1000
 		* 		3- LSBPP: determines which steganography method to run: false: LSB+, true: LSB++
+		* 		4- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		* 		    like new SplittableRandom(1234) [a fixed seed gives exactly the same stego image in every run]
+		* 		5- ExactLength: false: each sample is selected with probability MessageLength/samples [the number of embedded bits is MessageLength on average]
+		* 		    true: exactly MessageLength samples are selected before embedding [see EmbeddingKey]; like the default mode, the bit of
+		* 		    a selected sample which can not carry it [a failed_to_hide skip: locked pixel or unavailable bin] is carried to the next
+		* 		    usable sample of the same channel, even if that sample was not selected. A carried bit can land on a sample which was
+		* 		    selected itself, so at most MessageLength bits are embedded [see the returned value and EmbeddingReport]
+		* 		6- Parallel: true: the channels are embedded at the same time and the histograms are calculated by all cores
+		* 		    [the result is the same as false for the same seed]
 		* For the details about this method, check the paper with title "LSB Matching Revisited"
 		* This function is the implementation of both LSB+ and LSB++ methods
 		* Both of these methods keep the histogram of stego image exact like cover image
@@ -194,592 +202,326 @@ public class CreateStego {
 		*/
 		try{
 			// Read the input image
-			BufferedImage image = ImageIO.read(new File(BMPFileName));
-			
-			// Extract the color space of input image (gray or color [RBG])
-			ColorSpace cs = image.getColorModel().getColorSpace();
-			boolean isGrayscale = cs.getType() == ColorSpace.TYPE_GRAY;
-			float Probability = 0;
-
-			// Calculating the embedding rate [bit per pixel]
-			if (isGrayscale)
-				Probability = (float)MessageLength / (image.getWidth()*image.getHeight());
-			else
-				Probability = (float)MessageLength / (image.getWidth()*image.getHeight()*3);
+			// The pixel values are accessed directly on the byte array of the image [see PixelPlanes]
+			// The embedding process itself is done in memory [see Steganography]
 
-			//System.out.println(isGrayscale);
-
-			int [] gray_hist = new int[256];
-			int [] red_hist = new int[256];
-			int [] green_hist = new int[256];
-			int [] blue_hist = new int[256];
+			//The result [stego image] will be stored in the same input path, and the file name will be changed to:
+			//for LSBPLUS: inputfilename.bmp.LSBP.bmp
+			//for LSBPLUS-PLUS: inputfilename.bmp.LSBPP.bmp
 			
-			int [] gray_hist_Embeded_data = new int[256];
-			int [] red_hist_Embeded_data = new int[256];
-			int [] green_hist_Embeded_data = new int[256];
-			int [] blue_hist_Embeded_data = new int[256];
-
-			int [] gray_hist_stego = new int[256];
-			int [] red_hist_stego = new int[256];
-			int [] green_hist_stego = new int[256];
-			int [] blue_hist_stego = new int[256];
-			boolean [] gray_bin_available = new boolean[128];
-			boolean [] green_bin_available = new boolean[128];
-			boolean [] red_bin_available = new boolean[128];
-			boolean [] blue_bin_available = new boolean[128];
+			// For example if the input file name and path is "/User/kazemmit/Documents/test.bmp" the result will be a stego image
+			// with following file name and path:
 			
-			int [] gray_hist_dif = new int[256];
-			int [] red_hist_dif = new int[256];
-			int [] green_hist_dif = new int[256];
-			int [] blue_hist_dif = new int[256];
+			//for LSBPLUS: "/User/kazemmit/Documents/test.bmp.LSBP.bmp"
+			//for LSBPLUS-PLUS: "/User/kazemmit/Documents/test.bmp.LSBPP.bmp"
 			
+			if (LSBPP){ // for LSB++  method
+				File outputfile = new File(BMPFileName+".LSBPP.bmp");
+				Steganography.embed("LSBPP", new File(BMPFileName), outputfile, MessageLength, rand, ExactLength, Parallel, false);
+			}
+			else// for LSB+  method
+			{
+				File outputfile = new File(BMPFileName+".LSBP.bmp");
+				Steganography.embed("LSBP", new File(BMPFileName), outputfile, MessageLength, rand, ExactLength, Parallel, false);
+			}
+		}
+		catch (Exception err)
+		{
+			System.out.println(err.toString());
+		}
+	}
 
-			// Calculating the image histogram
-			// If the input image is a gray image, calculate the histogram just for gray channel
-			// If the input image is a color image, calculate the histogram of red, blue and green channels separately
-			
-			for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
+	public static long LSBPLUS_LSBPLUSPLUS(PixelPlanes planes, int MessageLength, boolean LSBPP, RandomGenerator rand, boolean ExactLength, boolean Parallel)  {
+		return LSBPLUS_LSBPLUSPLUS(planes, MessageLength, LSBPP, rand, ExactLength, Parallel, null);
+	}
+
+	public static long LSBPLUS_LSBPLUSPLUS(PixelPlanes planes, int MessageLength, boolean LSBPP, RandomGenerator rand, boolean ExactLength, boolean Parallel, int[][] cover_histograms)  {
+		return LSBPLUS_LSBPLUSPLUS(planes, MessageLength, LSBPP, rand, ExactLength, Parallel, cover_histograms, null);
+	}
+
+	public static long LSBPLUS_LSBPLUSPLUS(PixelPlanes planes, int MessageLength, boolean LSBPP, RandomGenerator rand, boolean ExactLength, boolean Parallel, int[][] cover_histograms, EmbeddingReport report)  {
+		/*
+		* Params:
+		* 		1- planes: the cover image [see PixelPlanes]; it is changed in place to the stego image
+		* 		2- MessageLength: number of bits that you want to hide in the input image like 1000
+		* 		3- LSBPP: determines which steganography method to run: false: LSB+, true: LSB++
+		* 		4- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		* 		    like new SplittableRandom(1234) [a fixed seed gives exactly the same stego image in every run]
+		* 		5- ExactLength: false: each sample is selected with probability MessageLength/samples [the number of embedded bits is MessageLength on average]
+		* 		    true: exactly MessageLength samples are selected before embedding [see EmbeddingKey]; like the default mode, the bit of
+		* 		    a selected sample which can not carry it [a failed_to_hide skip: locked pixel or unavailable bin] is carried to the next
+		* 		    usable sample of the same channel, even if that sample was not selected. A carried bit can land on a sample which was
+		* 		    selected itself, so at most MessageLength bits are embedded [see the returned value and EmbeddingReport]
+		* 		6- Parallel: true: the channels are embedded at the same time and the histograms are calculated by all cores
+		* 		    [the result is the same as false for the same seed]
+		* 		7- cover_histograms: histogram of each channel of the cover image [indexed by the channel], or null to calculate them
+		* 		    [see CoverImage: the same histograms are used for all stego images of one cover]
+		* 		8- report: the changes, compensation changes and failed_to_hide skips are added to report [or null, see EmbeddingReport]
+		* Same embedding process as LSBPLUS_LSBPLUSPLUS(BMPFileName, ...) for an image which is already in memory [nothing is read or written].
+		* Returns the number of embedded message bits [pixels used for the message, without the compensation changes].
+		*/
+		// Extract the color space of input image (gray or color [RBG])
+		boolean isGrayscale = planes.isGrayscale;
+		float Probability = 0;
+
+		// Calculating the embedding rate [bit per pixel]
+		if (isGrayscale)
+			Probability = (float)MessageLength / (planes.width*planes.height);
+		else
+			Probability = (float)MessageLength / (planes.width*planes.height*3);
+
+		//System.out.println(isGrayscale);
+
+		// Both methods preserve the histogram of each channel separately
+		// If the input image is a gray image, the embedding process is done just for gray channel
+		// If the input image is a color image, the embedding process is done for green, blue and red channels separately
+		// Exact length mode: exactly MessageLength samples [channels of pixels] are selected as the embedding key
+		// [if a selected sample can not be used, the next sample of the same channel is used like the default mode]
+		BitSet selected = null;
+		if (ExactLength)
+			selected = EmbeddingKey.select(planes.samples.length, MessageLength, rand);
+
+		int [] channel_list;
+		if (isGrayscale) // For gray scale images
+			channel_list = new int[] {PixelPlanes.GRAY};
+		else //Color Image
+			channel_list = new int[] {PixelPlanes.GREEN, PixelPlanes.BLUE, PixelPlanes.RED};
+
+		// The bookkeeping of each channel [histograms, locked and used pixels] is independent of the other channels,
+		// so each channel has its own random stream [one seed per channel is drawn in the above order]
+		// and the channels can be embedded at the same time without changing the result
+		long [] channel_seeds = new long[channel_list.length];
+		for (int i = 0; i < channel_list.length; i++)
+			channel_seeds[i] = rand.nextLong();
+		float channel_probability = Probability;
+		BitSet key = selected;
+
+		IntStream channel_stream = IntStream.range(0, channel_list.length);
+		if (Parallel)
+			channel_stream = channel_stream.parallel();
+		long embedded_bits = channel_stream.mapToLong(i -> {
+			int [] hist;
+			if (cover_histograms != null)
+				hist = cover_histograms[channel_list[i]];
+			else // Calculating the histogram of the channel
+				hist = planes.histogram(channel_list[i], Parallel);
+			// Each channel collects its own report
+			EmbeddingReport channel_report = report == null ? null : report.part();
+			long embedded = LSBPLUS_LSBPLUSPLUS_channel(planes, channel_list[i], hist, channel_probability, LSBPP, new SplittableRandom(channel_seeds[i]), key, channel_report);
+			if (report != null)
+				report.add(channel_report);
+			return embedded;
+		}).sum();
+		if (report != null)
+			report.embeddedBits += embedded_bits;
+		return embedded_bits;
+	}
+
+	private static long LSBPLUS_LSBPLUSPLUS_channel(PixelPlanes planes, int channel, int[] hist, float Probability, boolean LSBPP, RandomGenerator rand, BitSet selected, EmbeddingReport report)  {
+		/*
+		* Params:
+		* 		1- planes: the input image [it will be changed in place]
+		* 		2- channel: the channel that should be used [PixelPlanes.GRAY, PixelPlanes.RED, PixelPlanes.GREEN or PixelPlanes.BLUE]
+		* 		3- hist: histogram of the channel of the cover image [it is not changed]
+		* 		4- Probability: embedding rate [bit per pixel]
+		* 		5- LSBPP: determines which steganography method to run: false: LSB+, true: LSB++
+		* 		6- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		* 		7- selected: samples selected by the embedding key in exact length mode, or null to select each sample with Probability
+		* 		8- report: statistics of the channel [or null]
+		* Embedding process of LSB+ / LSB++ for one channel of the image
+		* After this step, the histogram of this channel of stego image is exactly like the cover image
+		* The channel is scanned two times: locking [LSB++] and embedding, then compensation
+		* Returns the number of embedded message bits of the channel
+		*/
+		byte[] samples = planes.samples;
+		int width = planes.width;
+		int height = planes.height;
+		int channels = planes.channels;
+
+		LSBPlusChannel state = new LSBPlusChannel(hist, Probability, LSBPP, rand);
+
+		// Used pixels are kept as one bit per pixel, indexed by the linear pixel index [y*width + x],
+		// so checking whether a pixel is used costs O(1) instead of a list scan
+		BitSet used_pixels = new BitSet(width*height);
+		long embedded = 0;
+
+		// Embedding process
+		// [more info: refer to above mentioned papers]
+		for (int yPixel = 0; yPixel < height; yPixel++)
+		{
+			for (int xPixel = 0; xPixel < width; xPixel++)
 			{
-				for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-				{
-					Color c = new Color(image.getRGB(xPixel, yPixel));
-					
-					
-					
-					if (isGrayscale){
-						int gray = c.getBlue();
-						gray_hist[gray] +=1;
-					}
-					else{
-						int blue_channel = c.getBlue();
-						int green_channel = c.getGreen();
-						int red_channel = c.getRed();
-						red_hist[red_channel] +=1;
-						blue_hist[blue_channel] +=1;
-						green_hist[green_channel] +=1;
-					}
+				int position = (yPixel*width + xPixel)*channels + channel;
+				int cover_value = samples[position] & 0xFF;
+				int value = state.embed(cover_value, selected, position);
+				if (state.used){
+					samples[position] = (byte)value;
+					if (report != null)
+						report.change(position, cover_value, value);
+					used_pixels.set(yPixel*width + xPixel);
+					embedded++;
 				}
 			}
-			
+
+		}
+
+		// Intentional embedding for preserving [restoring] the cover histogram
+		// So, after this step the cover and stego histograms will be the same
+		for (int yPixel = 0; yPixel < height; yPixel++)
+		{
+			for (int xPixel = 0; xPixel < width; xPixel++)
+			{
+				if (used_pixels.get(yPixel*width + xPixel))
+					continue;
+
+				int position = (yPixel*width + xPixel)*channels + channel;
+				int cover_value = samples[position] & 0xFF;
+				int value = state.compensate(cover_value);
+				samples[position] = (byte)value;
+				if (report != null)
+					report.change(position, cover_value, value);
+			}
+		}
+		if (report != null){
+			report.compensationChanges += state.compensation_changes;
+			report.failedToHideSkips += state.failed_to_hide_skips;
+		}
+		return embedded;
+	}
+
+	static final class LSBPlusChannel {
+		/*
+		 * Bookkeeping of LSB+ / LSB++ for one channel of the image [histograms, locked units and available bins].
+		 * The pixels of the channel are given one by one in the visiting order, first to embed [every pixel], then to
+		 * compensate [every pixel which was not used by embed]. Nothing else is read, so the same state can be used for
+		 * an image in memory [LSBPLUS_LSBPLUSPLUS_channel] or for an image which is read strip by strip [StreamingStego].
+		 */
+		final int [] hist;
+		final int [] hist_stego;
+		final int [] hist_Embeded_data = new int[256];
+		final boolean [] bin_available = new boolean[128];
+		final int [] hist_dif = new int[256];
+		final float Probability;
+		final boolean LSBPP;
+		final RandomGenerator rand;
+		boolean failed_to_hide = false;
+		// true if the last pixel given to embed was used for the message
+		boolean used;
+		// Selected pixels which could not carry a message bit [locked or unavailable bin], and changes made by compensate
+		long failed_to_hide_skips;
+		long compensation_changes;
+
+		LSBPlusChannel(int[] hist, float Probability, boolean LSBPP, RandomGenerator rand)  {
+			this.hist = hist;
+			this.Probability = Probability;
+			this.LSBPP = LSBPP;
+			this.rand = rand;
+
 			// This part of code is used for LSB++ method 
 			//Check the above mentioned papers for better understanding the code of this function
 			// Calculating the different between two bins
 			if (LSBPP){
 				for (int i=0;i<128;i++){
-					if (isGrayscale){ // For gray scale image
-						if (gray_hist[i*2]>gray_hist[i*2+1])
-							gray_hist_dif[i*2] = gray_hist[i*2]-gray_hist[i*2+1];
-						if (gray_hist[i*2]<gray_hist[i*2+1])
-							gray_hist_dif[i*2+1] = gray_hist[i*2+1]-gray_hist[i*2];
-					}
-					else{// For Color image
-						if (green_hist[i*2]>green_hist[i*2+1])
-							green_hist_dif[i*2] = green_hist[i*2]-green_hist[i*2+1];
-						if (green_hist[i*2]<green_hist[i*2+1])
-							green_hist_dif[i*2+1] = green_hist[i*2+1]-green_hist[i*2];
-						if (blue_hist[i*2]>blue_hist[i*2+1])
-							blue_hist_dif[i*2] = blue_hist[i*2]-blue_hist[i*2+1];
-						if (blue_hist[i*2]<blue_hist[i*2+1])
-							blue_hist_dif[i*2+1] = blue_hist[i*2+1]-blue_hist[i*2];
-						if (red_hist[i*2]>red_hist[i*2+1])
-							red_hist_dif[i*2] = red_hist[i*2]-red_hist[i*2+1];
-						if (red_hist[i*2]<red_hist[i*2+1])
-							red_hist_dif[i*2+1] = red_hist[i*2+1]-red_hist[i*2];
-					}
+					if (hist[i*2]>hist[i*2+1])
+						hist_dif[i*2] = hist[i*2]-hist[i*2+1];
+					if (hist[i*2]<hist[i*2+1])
+						hist_dif[i*2+1] = hist[i*2+1]-hist[i*2];
 				}
 			}
-			
-			ArrayList locked_pixels_gray = new ArrayList();
-			ArrayList locked_pixels_red = new ArrayList();
-			ArrayList locked_pixels_green = new ArrayList();
-			ArrayList locked_pixels_blue = new ArrayList();
-			
+
+			// The stego histogram starts as the cover histogram and is updated for every change of the embedding process,
+			// so it is not needed to calculate it again after the embedding process
+			hist_stego = hist.clone();
+
+			Arrays.fill(bin_available, Boolean.TRUE);
+
+			// Both LSB+ and LSB++: after calculating of image histogram, if one of bins [of a unit] is zero, then non of pixels related that unit will be used for embedding process
+			// [more info: refer to above mentioned papers]
+			for (int i=0;i<128;i++){
+				if ((hist[i*2]==0) || (hist[i*2+1]==0))
+					bin_available[i] = false;
+			}
+		}
+
+		int embed(int value, BitSet selected, int position)  {
+			/*
+			 * Params:
+			 * 		1- value: cover value of the pixel
+			 * 		2- selected: samples selected by the embedding key in exact length mode, or null to select each sample with Probability
+			 * 		3- position: position of the sample in the whole image [used by selected]
+			 * Returns the stego value of the pixel [used is set to true if the pixel carries a message bit]
+			 */
+			used = false;
+
 			// This part of code is used for LSB++ mthod
 			// Check the above mentioned papers for better understanding the code of this function
-			// Locking Process [refer to the mentioned papers]
+			// Locking Process [refer to the mentioned papers]: the first hist_dif[value] pixels with this value [in the
+			// visiting order] are locked. The current pixel has not been changed yet, so locking it here gives exactly the
+			// same locked pixels as a separate locking pass before the embedding process.
 			// Locked pixel will be never used on embedding process
-			
+			boolean locked = false;
 			if (LSBPP){
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						// Extract the gray value of the current pixel [for gray scale images]
-						// Extract the red value of the current pixel [for color images]
-						// Extract the green value of the current pixel [for color images]
-						// Extract the blue value of the current pixel [for color images]
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int blue_channel = c.getBlue();
-						int green_channel = c.getGreen();
-						int red_channel = c.getRed();
-						int gray = c.getBlue();
-						
-						if (isGrayscale){
-							if (gray_hist_dif[gray]>0){
-								gray_hist_dif[gray] -=1;
-								locked_pixels_gray.add(image.getHeight()*xPixel+yPixel);
-								
-							}
-						}
-						else //Color Image
-						{
-							if (green_hist_dif[green_channel]>0){
-								green_hist_dif[green_channel] -=1;
-								locked_pixels_green.add(image.getHeight()*xPixel+yPixel);
-							}
-							if (red_hist_dif[red_channel]>0){
-								red_hist_dif[red_channel] -=1;
-								locked_pixels_red.add(image.getHeight()*xPixel+yPixel);
-							}
-							if (blue_hist_dif[blue_channel]>0){
-								blue_hist_dif[blue_channel] -=1;
-								locked_pixels_blue.add(image.getHeight()*xPixel+yPixel);
-							}
-							
-						}
-						
-					}
+				if (hist_dif[value]>0){
+					hist_dif[value] -=1;
+					locked = true;
 				}
 			}
-			ArrayList used_pixels_gray = new ArrayList();
-			ArrayList used_pixels_red = new ArrayList();
-			ArrayList used_pixels_green = new ArrayList();
-			ArrayList used_pixels_blue = new ArrayList();
-			
-			if (isGrayscale){ // For gray scale images
-				
-				Arrays.fill(gray_bin_available, Boolean.TRUE);
-				
-				Arrays.fill(gray_hist_Embeded_data, 0);
-				
-				Arrays.fill(gray_hist_stego, 0);
-				
-				boolean failed_to_hide = false;
-				
-				// Both LSB+ and LSB++: after calculating of image histogram, if one of bins [of a unit] is zero, then non of pixels related that unit will be used for embedding process
-				// [more info: refer to above mentioned papers]
-				for (int i=0;i<128;i++){
-					if ((gray_hist[i*2]==0) || (gray_hist[i*2+1]==0))
-						gray_bin_available[i] = false;
-				}
-				
-				// Embedding process
-				// [more info: refer to above mentioned papers]
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int gray = c.getBlue();
-
-						Random rand = new Random();
-						float P_select   = rand.nextFloat();
-						if (P_select<=Probability || failed_to_hide)//Simulating the embedding key
-						{
-							if (LSBPP){
-								if (locked_pixels_gray.indexOf(image.getHeight()*xPixel+yPixel)>-1){
-									failed_to_hide = true;
-									continue;
-								}
-							}
-							if (!gray_bin_available[(gray/2)]){
-								failed_to_hide = true;
-								continue;
-							}
-							float P_change   = rand.nextFloat();
-							if (P_change <= 0.5){//Simulating the encrypted message
-								gray = (gray/2)*2;
-							}
-							else{
-								gray = (gray/2)*2+1;
-							}
-							failed_to_hide = false;
-							image.setRGB(xPixel, yPixel, 256*256*gray+256*gray+gray);
-							gray_hist_Embeded_data[gray] +=1;
-							used_pixels_gray.add(image.getHeight()*xPixel+yPixel);
-							if (gray_hist[gray] == gray_hist_Embeded_data[gray])
-								gray_bin_available[gray/2] = false;
-						}
-					}
 
-				}
-				
-				// Calculating of stego image histogram
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int gray = c.getBlue();
-						gray_hist_stego[gray] +=1;
-					}
-				}
-				
-				// Intentional embedding for preserving [restoring] the cover histogram
-				// So, after this step the cover and stego histograms will be the same
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						if (used_pixels_gray.indexOf(image.getHeight()*xPixel+yPixel)>-1)
-							continue;
-							
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int gray = c.getBlue();
-						if (gray_hist[(gray/2)*2+1] < gray_hist_stego[(gray/2)*2+1])
-							if (gray == (gray/2)*2+1){
-								gray = (gray/2)*2;
-								gray_hist_stego[(gray/2)*2+1] -=1;
-								gray_hist_stego[(gray/2)*2] +=1;
-							}
-						
-						if (gray_hist[(gray/2)*2] < gray_hist_stego[(gray/2)*2])
-							if (gray == (gray/2)*2){
-								gray = (gray/2)*2+1;
-								gray_hist_stego[(gray/2)*2] -=1;
-								gray_hist_stego[(gray/2)*2+1] +=1;
-							}	
-						image.setRGB(xPixel, yPixel, 256*256*gray+256*gray+gray);		            		
-					}
-				}
-			}
-			else //Color Image
+			boolean select;
+			if (selected == null)
+				select = rand.nextFloat()<=Probability;
+			else
+				select = selected.get(position);
+			if (select || failed_to_hide)//Simulating the embedding key
 			{
-				// Green Channel
-				boolean failed_to_hide = false;
-				Arrays.fill(green_bin_available, Boolean.TRUE);
-				
-				Arrays.fill(green_hist_Embeded_data, 0);
-				
-				Arrays.fill(green_hist_stego, 0);
-				
-				
-				for (int i=0;i<128;i++){
-					if ((green_hist[i*2]==0) || (green_hist[i*2+1]==0))
-						green_bin_available[i] = false;
+				if (locked){
+					failed_to_hide = true;
+					failed_to_hide_skips++;
+					return value;
 				}
-				
-				// Embedding process
-				// [more info: refer to above mentioned papers]
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int blue_channel = c.getBlue();
-						int green_channel = c.getGreen();
-						int red_channel = c.getRed();
-						int gray = c.getBlue();
-
-
-						Random rand = new Random();
-						float P_select   = rand.nextFloat();
-						if (P_select<=Probability || failed_to_hide)//Simulating the embedding key
-						{
-							if (LSBPP){
-								if (locked_pixels_green.indexOf(image.getHeight()*xPixel+yPixel)>-1){
-									failed_to_hide = true;
-									continue;
-								}
-							}
-							if (!green_bin_available[(green_channel/2)]){
-								failed_to_hide = true;
-								continue;
-							}
-							float P_change   = rand.nextFloat();
-							if (P_change <= 0.5){//Simulating the encrypted message
-								green_channel = (green_channel/2)*2;
-							}
-							else{
-								green_channel = (green_channel/2)*2+1;
-							}
-							failed_to_hide = false;
-							image.setRGB(xPixel, yPixel, 256*256*red_channel+256*green_channel+blue_channel);		            		
-							green_hist_Embeded_data[green_channel] +=1;
-							used_pixels_green.add(image.getHeight()*xPixel+yPixel);
-							if (green_hist[green_channel] == green_hist_Embeded_data[green_channel])
-								green_bin_available[green_channel/2] = false;
-						}
-					}
-
+				if (!bin_available[(value/2)]){
+					failed_to_hide = true;
+					failed_to_hide_skips++;
+					return value;
 				}
-				// Calculating of stego image histogram [green channel]
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int blue_channel = c.getBlue();
-						int green_channel = c.getGreen();
-						int red_channel = c.getRed();
-						int gray = c.getBlue();
-
-						green_hist_stego[green_channel] +=1;
-					}
+				int cover_value = value;
+				float P_change   = rand.nextFloat();
+				if (P_change <= 0.5){//Simulating the encrypted message
+					value = (value/2)*2;
 				}
-				
-				// Intentional embedding for preserving [restoring] the cover histogram
-				// So, after this step the cover and stego histograms will be the same
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						if (used_pixels_green.indexOf(image.getHeight()*xPixel+yPixel)>-1)
-							continue;
-							
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int blue_channel = c.getBlue();
-						int green_channel = c.getGreen();
-						int red_channel = c.getRed();
-						int gray = c.getBlue();
-						if (green_hist[(green_channel/2)*2+1] < green_hist_stego[(green_channel/2)*2+1])
-							if (green_channel == (green_channel/2)*2+1){
-								green_channel = (green_channel/2)*2;
-								green_hist_stego[(green_channel/2)*2+1] -=1;
-								green_hist_stego[(green_channel/2)*2] +=1;
-							}
-						
-						if (green_hist[(green_channel/2)*2] < green_hist_stego[(green_channel/2)*2])
-							if (green_channel == (green_channel/2)*2){
-								green_channel = (green_channel/2)*2+1;
-								green_hist_stego[(green_channel/2)*2] -=1;
-								green_hist_stego[(green_channel/2)*2+1] +=1;
-							}	
-						image.setRGB(xPixel, yPixel, 256*256*red_channel+256*green_channel+blue_channel);		            		
-					}
-				}
-				// Blue Channel
-				failed_to_hide = false;
-				
-				Arrays.fill(blue_bin_available, Boolean.TRUE);
-				
-				Arrays.fill(blue_hist_Embeded_data, 0);
-				
-				Arrays.fill(blue_hist_stego, 0);
-				
-				for (int i=0;i<128;i++){
-					if ((blue_hist[i*2]==0) || (blue_hist[i*2+1]==0))
-						blue_bin_available[i] = false;
-				}
-				
-				// Embedding process
-				// [more info: refer to above mentioned papers]
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int blue_channel = c.getBlue();
-						int green_channel = c.getGreen();
-						int red_channel = c.getRed();
-						int gray = c.getBlue();
-
-
-						Random rand = new Random();
-						float P_select   = rand.nextFloat();
-						if (P_select<=Probability || failed_to_hide)//Simulating the embedding key
-						{
-							if (LSBPP){
-								if (locked_pixels_blue.indexOf(image.getHeight()*xPixel+yPixel)>-1){
-									failed_to_hide = true;
-									continue;
-								}
-							}
-							if (!blue_bin_available[(blue_channel/2)]){
-								failed_to_hide = true;
-								continue;
-							}
-							float P_change   = rand.nextFloat();
-							if (P_change <= 0.5){//Simulating the encrypted message
-								blue_channel = (blue_channel/2)*2;
-							}
-							else{
-								blue_channel = (blue_channel/2)*2+1;
-							}
-							failed_to_hide = false;
-							image.setRGB(xPixel, yPixel, 256*256*red_channel+256*green_channel+blue_channel);		            		
-							blue_hist_Embeded_data[blue_channel] +=1;
-							used_pixels_blue.add(image.getHeight()*xPixel+yPixel);
-							if (blue_hist[blue_channel] == blue_hist_Embeded_data[blue_channel])
-								blue_bin_available[blue_channel/2] = false;
-						}
-					}
-
-				}
-				
-				// Calculating of stego image histogram [blue channel]
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int blue_channel = c.getBlue();
-						int green_channel = c.getGreen();
-						int red_channel = c.getRed();
-						int gray = c.getBlue();
-
-						blue_hist_stego[blue_channel] +=1;
-					}
-				}
-				
-				// Intentional embedding for preserving [restoring] the cover histogram
-				// So, after this step the cover and stego histograms will be the same
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						if (used_pixels_blue.indexOf(image.getHeight()*xPixel+yPixel)>-1)
-							continue;
-							
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int blue_channel = c.getBlue();
-						int green_channel = c.getGreen();
-						int red_channel = c.getRed();
-						int gray = c.getBlue();
-						if (blue_hist[(gray/2)*2+1] < blue_hist_stego[(blue_channel/2)*2+1])
-							if (blue_channel == (blue_channel/2)*2+1){
-								blue_channel = (blue_channel/2)*2;
-								blue_hist_stego[(blue_channel/2)*2+1] -=1;
-								blue_hist_stego[(blue_channel/2)*2] +=1;
-							}
-						
-						if (blue_hist[(blue_channel/2)*2] < blue_hist_stego[(blue_channel/2)*2])
-							if (blue_channel == (blue_channel/2)*2){
-								blue_channel = (blue_channel/2)*2+1;
-								blue_hist_stego[(blue_channel/2)*2] -=1;
-								blue_hist_stego[(blue_channel/2)*2+1] +=1;
-							}	
-						image.setRGB(xPixel, yPixel, 256*256*red_channel+256*green_channel+blue_channel);		            		
-					}
+				else{
+					value = (value/2)*2+1;
 				}
-				// Red Channel
 				failed_to_hide = false;
-				Arrays.fill(red_bin_available, Boolean.TRUE);
-				
-				Arrays.fill(red_hist_Embeded_data, 0);
-				
-				Arrays.fill(red_hist_stego, 0);
-				
-				for (int i=0;i<128;i++){
-					if ((red_hist[i*2]==0) || (red_hist[i*2+1]==0))
-						red_bin_available[i] = false;
-				}
-				
-				// Embedding process
-				// [more info: refer to above mentioned papers]
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int blue_channel = c.getBlue();
-						int green_channel = c.getGreen();
-						int red_channel = c.getRed();
-						int gray = c.getBlue();
-
-
-						Random rand = new Random();
-						float P_select   = rand.nextFloat();
-						if (P_select<=Probability || failed_to_hide)//Simulating the embedding key
-						{
-							if (LSBPP){
-								if (locked_pixels_red.indexOf(image.getHeight()*xPixel+yPixel)>-1){
-									failed_to_hide = true;
-									continue;
-								}
-							}
-							if (!red_bin_available[(red_channel/2)]){
-								failed_to_hide = true;
-								continue;
-							}
-							float P_change   = rand.nextFloat();
-							if (P_change <= 0.5){//Simulating the encrypted message
-								red_channel = (red_channel/2)*2;
-							}
-							else{
-								red_channel = (red_channel/2)*2+1;
-							}
-							failed_to_hide = false;
-							image.setRGB(xPixel, yPixel, 256*256*red_channel+256*green_channel+blue_channel);		            		
-							red_hist_Embeded_data[red_channel] +=1;
-							used_pixels_red.add(image.getHeight()*xPixel+yPixel);
-							if (red_hist[red_channel] == red_hist_Embeded_data[red_channel])
-								red_bin_available[red_channel/2] = false;
-						}
-					}
+				hist_stego[cover_value] -=1;
+				hist_stego[value] +=1;
+				hist_Embeded_data[value] +=1;
+				used = true;
+				if (hist[value] == hist_Embeded_data[value])
+					bin_available[value/2] = false;
+			}
+			return value;
+		}
 
+		int compensate(int value)  {
+			// Intentional embedding of one unused pixel, after all pixels were given to embed
+			int cover_value = value;
+			if (hist[(value/2)*2+1] < hist_stego[(value/2)*2+1])
+				if (value == (value/2)*2+1){
+					value = (value/2)*2;
+					hist_stego[(value/2)*2+1] -=1;
+					hist_stego[(value/2)*2] +=1;
 				}
-				
-				// Calculating of stego image histogram [red channel]
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int blue_channel = c.getBlue();
-						int green_channel = c.getGreen();
-						int red_channel = c.getRed();
-						int gray = c.getBlue();
 
-						red_hist_stego[red_channel] +=1;
-					}
+			if (hist[(value/2)*2] < hist_stego[(value/2)*2])
+				if (value == (value/2)*2){
+					value = (value/2)*2+1;
+					hist_stego[(value/2)*2] -=1;
+					hist_stego[(value/2)*2+1] +=1;
 				}
-				
-				// Intentional embedding for preserving [restoring] the cover histogram
-				// So, after this step the cover and stego histograms will be the same
-				for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-				{
-					for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-					{
-						if (used_pixels_red.indexOf(image.getHeight()*xPixel+yPixel)>-1)
-							continue;
-							
-						Color c = new Color(image.getRGB(xPixel, yPixel));
-						int blue_channel = c.getBlue();
-						int green_channel = c.getGreen();
-						int red_channel = c.getRed();
-						int gray = c.getBlue();
-						if (red_hist[(red_channel/2)*2+1] < red_hist_stego[(red_channel/2)*2+1])
-							if (red_channel == (red_channel/2)*2+1){
-								red_channel = (red_channel/2)*2;
-								red_hist_stego[(red_channel/2)*2+1] -=1;
-								red_hist_stego[(red_channel/2)*2] +=1;
-							}
-						
-						if (red_hist[(red_channel/2)*2] < red_hist_stego[(red_channel/2)*2])
-							if (red_channel == (red_channel/2)*2){
-								red_channel = (red_channel/2)*2+1;
-								red_hist_stego[(red_channel/2)*2] -=1;
-								red_hist_stego[(red_channel/2)*2+1] +=1;
-							}	
-						image.setRGB(xPixel, yPixel, 256*256*red_channel+256*green_channel+blue_channel);		            		
-					}
-				}
-
-			}
-			//The result [stego image] will be stored in the same input path, and the file name will be changed to:
-			//for LSBPLUS: inputfilename.bmp.LSBP.bmp
-			//for LSBPLUS-PLUS: inputfilename.bmp.LSBPP.bmp
-			
-			// For example if the input file name and path is "/User/kazemmit/Documents/test.bmp" the result will be a stego image
-			// with following file name and path:
-			
-			//for LSBPLUS: "/User/kazemmit/Documents/test.bmp.LSBP.bmp"
-			//for LSBPLUS-PLUS: "/User/kazemmit/Documents/test.bmp.LSBPP.bmp"
-			
-			if (LSBPP){ // for LSB++  method
-				File outputfile = new File(BMPFileName+".LSBPP.bmp");
-				ImageIO.write(image, "bmp", outputfile);
-			}
-			else// for LSB+  method
-			{
-				File outputfile = new File(BMPFileName+".LSBP.bmp");
-				ImageIO.write(image, "bmp", outputfile);
-			}
-		}
-		catch (Exception err)
-		{
-			System.out.println(err.toString());
+			if (value != cover_value)
+				compensation_changes++;
+			return value;
 		}
 	}
 
@@ -787,10 +529,27 @@ public class CreateStego {
 
 
 	public static void LSBM(String BMPFileName, int MessageLength)  {
+		LSBM(BMPFileName, MessageLength, new SplittableRandom());
+	}
+
+	public static void LSBM(String BMPFileName, int MessageLength, RandomGenerator rand)  {
+		LSBM(BMPFileName, MessageLength, rand, false);
+	}
+
+	public static void LSBM(String BMPFileName, int MessageLength, RandomGenerator rand, boolean ExactLength)  {
+		LSBM(BMPFileName, MessageLength, rand, ExactLength, false);
+	}
+
+	public static void LSBM(String BMPFileName, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel)  {
 		/*
 		 * Params:
 		 * 		1- BMPFileName: input image [path and file name] like /User/kazemmit/Documents/test.bmp
 		 * 		2- MessageLength: number of bits that you want to hide in the input image like 1000
+		 * 		3- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		 * 		    like new SplittableRandom(1234) [a fixed seed gives exactly the same stego image in every run]
+		 * 		4- ExactLength: false: each sample is selected with probability MessageLength/samples [the number of embedded bits is MessageLength on average]
+		 * 		    true: exactly MessageLength samples are selected before embedding [see EmbeddingKey] and only those samples are visited
+		 * 		5- Parallel: true: the bands of the image are processed by all cores [the result is the same as false for the same seed]
 		 * LSBM embedding method embeds the message bits [0s and 1s] based on embedding key [this key is used to select a target pixel to embed the message bit]. 
 		 * So, if the message bit [i] and least significant bit of the pixel are the same, nothing will be changes;
 		 * however, if the message bit [i] and least significant bit of the pixel are NOT the same, then, the pixel value will be decreased or increased by 1 with the same probability.
@@ -799,180 +558,9 @@ public class CreateStego {
 		
 		try{
 			// Read the input image
-			BufferedImage image = ImageIO.read(new File(BMPFileName));
-			
-			// Extract the color space of input image (gray or color [RBG])
-			ColorSpace cs = image.getColorModel().getColorSpace();
-			boolean isGrayscale = cs.getType() == ColorSpace.TYPE_GRAY;
-			float Probability = 0;
-
-			// Calculating the embedding rate [bit per pixel]
-			if (isGrayscale)
-				Probability = (float)MessageLength / (image.getWidth()*image.getHeight());
-			else
-				Probability = (float)MessageLength / (image.getWidth()*image.getHeight()*3);
-
-			//System.out.println(isGrayscale);
-
-			for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-			{
-				for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-				{
-					// Extract the gray value of the current pixel [for gray scale images]
-					// Extract the red value of the current pixel [for color images]
-					// Extract the green value of the current pixel [for color images]
-					// Extract the blue value of the current pixel [for color images]
-					Color c = new Color(image.getRGB(xPixel, yPixel));
-					int blue_channel = c.getBlue();
-					int green_channel = c.getGreen();
-					int red_channel = c.getRed();
-					int gray = c.getBlue();
-
-					if (isGrayscale){
-						Random rand = new Random();
-						float P_select   = rand.nextFloat();
-						if (P_select<=Probability)//Simulating the embedding key
-						{
-							float P_change   = rand.nextFloat();
-							if (P_change <= 0.5){//Simulating the encrypted message
-								// message bit and lease significant bit of current pixel are not the same
-								float P_change_type   = rand.nextFloat();
-								if (P_change_type <= 0.5){ 
-									//Decreasing the pixel value
-									if (gray == 0)
-										gray +=1;
-									else if (gray == 255)
-										gray -=1;
-									else
-										gray -=1;
-								}
-								else//Increasing the pixel value
-								{
-									if (gray == 0)
-										gray +=1;
-									else if (gray == 255)
-										gray -=1;
-									else
-										gray +=1;
-								}
-								//System.out.println(0);
-							}
-							else{
-								// message bit and lease significant bit of current pixel are the same.
-							}
-						}
-						image.setRGB(xPixel, yPixel, 256*256*gray+256*gray+gray);	
-						//c = new Color(image.getRGB(xPixel, yPixel));
-						//System.out.println(c.getBlue());
+			// The pixel values are accessed directly on the byte array of the image [see PixelPlanes]
+			// The embedding process itself is done in memory [see Steganography]
 
-					}
-					else // Color image
-					{
-						// Red Channel
-						Random rand = new Random();
-						float P_select   = rand.nextFloat();
-						if (P_select<=Probability)//Simulating the embedding key
-						{
-							float P_change   = rand.nextFloat();
-							if (P_change <= 0.5){//Simulating the encrypted message
-								// message bit and lease significant bit of current pixel are not the same
-								float P_change_type   = rand.nextFloat();
-								if (P_change_type <= 0.5){
-									//Decreasing the pixel value
-									if (red_channel == 0)
-										red_channel +=1;
-									else if (red_channel == 255)
-										red_channel -=1;
-									else
-										red_channel -=1;
-								}
-								else//Increasing the pixel value
-								{
-									if (red_channel == 0)
-										red_channel +=1;
-									else if (red_channel == 255)
-										red_channel -=1;
-									else
-										red_channel +=1;
-								}
-								//System.out.println(0);
-							}
-							else{
-								// message bit and lease significant bit of current pixel are the same.
-							}
-						}
-						
-						// Green Channel
-						rand = new Random();
-						P_select   = rand.nextFloat();
-						if (P_select<=Probability)//Simulating the embedding key
-						{
-							float P_change   = rand.nextFloat();
-							if (P_change <= 0.5){//Simulating the encrypted message
-								// message bit and lease significant bit of current pixel are not the same
-								float P_change_type   = rand.nextFloat();
-								if (P_change_type <= 0.5){
-									//Decreasing the pixel value
-									if (green_channel == 0)
-										green_channel +=1;
-									else if (green_channel == 255)
-										green_channel -=1;
-									else
-										green_channel -=1;
-								}
-								else//Increasing the pixel value
-								{
-									if (green_channel == 0)
-										green_channel +=1;
-									else if (green_channel == 255)
-										green_channel -=1;
-									else
-										green_channel +=1;
-								}
-								//System.out.println(0);
-							}
-							else{
-								// message bit and lease significant bit of current pixel are the same.
-							}
-						}
-
-						//	Blue Channel
-						rand = new Random();
-						P_select   = rand.nextFloat();
-						if (P_select<=Probability)//Simulating the embedding key
-						{
-							float P_change   = rand.nextFloat();
-							if (P_change <= 0.5){//Simulating the encrypted message
-								// message bit and lease significant bit of current pixel are not the same
-								float P_change_type   = rand.nextFloat();
-								if (P_change_type <= 0.5){
-									//Decreasing the pixel value
-									if (blue_channel == 0)
-										blue_channel +=1;
-									else if (blue_channel == 255)
-										blue_channel -=1;
-									else
-										blue_channel -=1;
-								}
-								else//Increasing the pixel value
-								{
-									if (blue_channel == 0)
-										blue_channel +=1;
-									else if (blue_channel == 255)
-										blue_channel -=1;
-									else
-										blue_channel +=1;
-								}
-								//System.out.println(0);
-							}
-							else{
-								// message bit and lease significant bit of current pixel are the same.
-							}
-						}
-						image.setRGB(xPixel, yPixel, 256*256*red_channel+256*green_channel+blue_channel);
-					}        
-				}
-			}
 			//The result [stego image] will be stored in the same input path, and the file name will be changed to:
 			// inputfilename.bmp.LSBM.bmp
 			
@@ -981,249 +569,131 @@ public class CreateStego {
 			//"/User/kazemmit/Documents/test.bmp.LSBM.bmp"
 			
 			File outputfile = new File(BMPFileName+".LSBM.bmp");
-			ImageIO.write(image, "bmp", outputfile);
+			Steganography.embed("LSBM", new File(BMPFileName), outputfile, MessageLength, rand, ExactLength, Parallel, false);
 		}
 		catch (Exception err)
 		{
 			System.out.println(err.toString());
 		}
 	}
-	private static int f_LSBMR(int xi,int xj){
-		return ((xi/2)+xj) - (((xi/2)+xj)/2)*2;
+
+	public static long LSBM(PixelPlanes planes, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel)  {
+		/*
+		 * Params:
+		 * 		1- planes: the cover image [see PixelPlanes]; it is changed in place to the stego image
+		 * 		2- MessageLength: number of bits that you want to hide in the input image like 1000
+		 * 		3- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		 * 		    like new SplittableRandom(1234) [a fixed seed gives exactly the same stego image in every run]
+		 * 		4- ExactLength: false: each sample is selected with probability MessageLength/samples [the number of embedded bits is MessageLength on average]
+		 * 		    true: exactly MessageLength samples are selected before embedding [see EmbeddingKey] and only those samples are visited
+		 * 		5- Parallel: true: the bands of the image are processed by all cores [the result is the same as false for the same seed]
+		 * Same embedding process as LSBM(BMPFileName, ...) for an image which is already in memory [nothing is read or written].
+		 * Returns the number of embedded message bits.
+		 */
+		return Embedders.LSBM.embed(planes, MessageLength, rand, ExactLength, Parallel, null);
+	}
+
+	static int LSBM_value(int value, RandomGenerator rand){
+		// LSBM embedding of one message bit in one sample [the same decisions as the embedding loop of LSBM]
+		float P_change   = rand.nextFloat();
+		if (P_change <= 0.5){//Simulating the encrypted message
+			// message bit and lease significant bit of current pixel are not the same
+			float P_change_type   = rand.nextFloat();
+			if (value == 0)
+				value +=1;
+			else if (value == 255)
+				value -=1;
+			else if (P_change_type <= 0.5)//Decreasing the pixel value
+				value -=1;
+			else//Increasing the pixel value
+				value +=1;
+		}
+		return value;
+	}
+	static void LSBMR_pair(byte[] samples, int position_1, int position_2, RandomGenerator rand){
+		// LSBMR embedding of two message bits in one pair of samples [the same decisions as the embedding loop of LSBMR]
+		// The change of the pair is read from LSBMR_TABLE, only the direction of the xj change is drawn in the loop
+		int xi = samples[position_1] & 0xFF;
+		int xj = samples[position_2] & 0xFF;
+		int mi = rand.nextFloat() <= 0.5 ? 1 : 0;//Simulating the encrypted message
+		int mj = rand.nextFloat() <= 0.5 ? 1 : 0;
+		int action = LSBMR_TABLE[(mi << 4) | (mj << 3) | ((xi & 1) << 2) | (f_LSBMR(xi, xj) << 1) | ((xi - 1) >>> 31)];
+		int delta_i = (action & 3) - 1;
+		int delta_j = 0;
+		if ((action >> 2) != 0){
+			float P_increase_decrease   = rand.nextFloat();
+			delta_j = P_increase_decrease <= 0.5 ? 1 : -1;
+		}
+		// A change out of [0, 255] is not done
+		int stego_i = xi + delta_i;
+		int stego_j = xj + delta_j;
+		samples[position_1] = (byte)((stego_i & ~0xFF) == 0 ? stego_i : xi);
+		samples[position_2] = (byte)((stego_j & ~0xFF) == 0 ? stego_j : xj);
 	}
-	private static int LSB_bit(int x){
-		return x - (x/2)*2;
+
+	// Change of an LSBMR pair, indexed by (mi, mj, LSB of xi, f(xi, xj), xi == 0) [see LSBMR_table]
+	private static final byte[] LSBMR_TABLE = LSBMR_table();
+
+	private static byte[] LSBMR_table(){
+		/*
+		 * Each entry is (delta of xi + 1) | (xj is changed by +-1) << 2 for:
+		 * 		mi == LSB(xi), mj == f(xi, xj): nothing is changed
+		 * 		mi == LSB(xi), mj != f(xi, xj): xj + 1 or xj - 1 [random]
+		 * 		mi != LSB(xi): xi - 1 if mj == f(xi - 1, xj), otherwise xi + 1
+		 * f(xi - 1, xj) is known from LSB(xi) and f(xi, xj): (xi - 1)/2 is xi/2 for odd xi, and xi/2 - 1 for even xi,
+		 * except xi == 0 where (0 - 1)/2 is 0 [integer division of the first implementation], so f(-1, xj) = f(0, xj).
+		 */
+		byte[] table = new byte[32];
+		for (int index = 0; index < 32; index++){
+			int mi = (index >> 4) & 1;
+			int mj = (index >> 3) & 1;
+			int lsb = (index >> 2) & 1;
+			int f = (index >> 1) & 1;
+			int zero = index & 1;
+			if (mi == lsb)
+				table[index] = (byte)(1 | (mj != f ? 1 << 2 : 0));
+			else{
+				int f_previous = (lsb == 1 || zero == 1) ? f : 1 - f;
+				table[index] = (byte)(mj == f_previous ? 0 : 2);
+			}
+		}
+		return table;
+	}
+
+	private static int f_LSBMR(int xi,int xj){
+		return ((xi >> 1) + xj) & 1;
 	}
 	public static void LSBMR(String BMPFileName, int MessageLength)  {
+		LSBMR(BMPFileName, MessageLength, new SplittableRandom());
+	}
+
+	public static void LSBMR(String BMPFileName, int MessageLength, RandomGenerator rand)  {
+		LSBMR(BMPFileName, MessageLength, rand, false);
+	}
+
+	public static void LSBMR(String BMPFileName, int MessageLength, RandomGenerator rand, boolean ExactLength)  {
+		LSBMR(BMPFileName, MessageLength, rand, ExactLength, false);
+	}
+
+	public static void LSBMR(String BMPFileName, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel)  {
 		/*
 		* Params:
 		* 		1- BMPFileName: input image [path and file name] like /User/kazemmit/Documents/test.bmp
 		* 		2- MessageLength: number of bits that you want to hide in the input image like 1000
+		* 		3- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		* 		    like new SplittableRandom(1234) [a fixed seed gives exactly the same stego image in every run]
+		* 		4- ExactLength: false: each pair is selected with probability MessageLength/samples [the number of embedded bits is MessageLength on average]
+		* 		    true: exactly MessageLength/2 pairs are selected before embedding [see EmbeddingKey] and only those pairs are visited
+		* 		5- Parallel: true: the bands of the image are processed by all cores [the result is the same as false for the same seed]
 		* For the details about this method, search for the paper with title "LSB Matching Revisited" 
+		* The pixels of each row are used as pairs (2k, 2k+1); for color images each channel of a pair is used separately.
 		*/
 		
 		try{
 			// Read the input image
-			BufferedImage image = ImageIO.read(new File(BMPFileName));
-			
-			// Extract the color space of input image (gray or color [RBG])
-			ColorSpace cs = image.getColorModel().getColorSpace();
-			boolean isGrayscale = cs.getType() == ColorSpace.TYPE_GRAY;
-			float Probability = 0;
-
-			// Calculating the embedding rate [bit per pixel]
-			if (isGrayscale)
-				Probability = (float)MessageLength / (image.getWidth()*image.getHeight());
-			else
-				Probability = (float)MessageLength / (image.getWidth()*image.getHeight()*3);
-
-			//System.out.println(isGrayscale);
-
-			for (int xPixel = 0; xPixel < image.getWidth()/2; xPixel++)
-			{
-				for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-				{
-					// Extract the gray value of the pixel xi and xj [for gray scale images]
-					// Extract the red value of the pixel xi and xj [for color images]
-					// Extract the green value of the pixel xi and xj [for color images]
-					// Extract the blue value of the pixel xi and xj [for color images]
-					
-					Color c_1 = new Color(image.getRGB(xPixel*2, yPixel));
-					int blue_channel_1 = c_1.getBlue();
-					int green_channel_1 = c_1.getGreen();
-					int red_channel_1 = c_1.getRed();
-					int gray_1 = c_1.getBlue();
-
-					Color c_2 = new Color(image.getRGB(xPixel*2+1, yPixel));
-					int blue_channel_2 = c_2.getBlue();
-					int green_channel_2 = c_2.getGreen();
-					int red_channel_2 = c_2.getRed();
-					int gray_2 = c_2.getBlue();
-
-
-
-					if (isGrayscale){// For gray scale images
-						Random rand = new Random();
-						float P_select   = rand.nextFloat();
-						if (P_select<=Probability)//Simulating the embedding key
-						{
-							int mi = 0;
-							int mj = 0;
-							float P_m   = rand.nextFloat();
-							if (P_m <= 0.5)//Simulating the encrypted message
-								mi = 1;
-
-							P_m   = rand.nextFloat();
-							if (P_m <= 0.5)//Simulating the encrypted message
-								mj = 1;
-							//Check the above mentioned paper for better understanding the code of this function
-							if (mi==LSB_bit(gray_1)){ 
-								if (mj!=f_LSBMR(gray_1,gray_2))
-								{
-									float P_increase_decrease   = rand.nextFloat();
-									if (P_increase_decrease <= 0.5){
-										if (gray_2<255)
-											gray_2 +=1;
-									}
-									else{
-										if (gray_2>0)
-											gray_2 -=1;
-									}
-								}
-							}
-							else
-							{
-								if (mj==f_LSBMR(gray_1-1,gray_2)){
-									if (gray_1>0)
-										gray_1 -=1;
-								}
-								else{
-									if (gray_1<255)
-										gray_1 +=1;
-								}	
-							}
-
-
-						}
-						image.setRGB(xPixel*2, yPixel, 256*256*gray_1+256*gray_1+gray_1);	
-						image.setRGB(xPixel*2+1, yPixel, 256*256*gray_2+256*gray_2+gray_2);	
-					}
-					else // Color Image
-					{
-						
-						// Red channel
-						Random rand = new Random();
-						float P_select   = rand.nextFloat();
-						if (P_select<=Probability)//Simulating the embedding key
-						{
-							int mi = 0;
-							int mj = 0;
-							float P_m   = rand.nextFloat();
-							if (P_m <= 0.5)//Simulating the encrypted message
-								mi = 1;
-
-							P_m   = rand.nextFloat();
-							if (P_m <= 0.5)//Simulating the encrypted message
-								mj = 1;
-							//Check the above mentioned paper for better understanding the code of this function
-							if (mi==LSB_bit(red_channel_1)){
-								if (mj!=f_LSBMR(red_channel_1,red_channel_2))
-								{
-									float P_increase_decrease   = rand.nextFloat();
-									if (P_increase_decrease <= 0.5){
-										if (red_channel_2<255)
-											red_channel_2 +=1;
-									}
-									else{
-										if (red_channel_2>0)
-											red_channel_2 -=1;
-									}
-								}
-							}
-							else
-							{
-								if (mj==f_LSBMR(red_channel_1-1,red_channel_2)){
-									if (red_channel_1>0)
-										red_channel_1 -=1;
-								}
-								else{
-									if (red_channel_1<255)
-										red_channel_1 +=1;
-								}	
-							}
-
-						}
-
-						// Blue channel
-						rand = new Random();
-						P_select   = rand.nextFloat();
-						if (P_select<=Probability)//Simulating the embedding key
-						{
-							int mi = 0;
-							int mj = 0;
-							float P_m   = rand.nextFloat();
-							if (P_m <= 0.5)//Simulating the encrypted message
-								mi = 1;
-
-							P_m   = rand.nextFloat();
-							if (P_m <= 0.5)//Simulating the encrypted message
-								mj = 1;
-							//Check the above mentioned paper for better understanding the code of this function
-							if (mi==LSB_bit(blue_channel_1)){
-								if (mj!=f_LSBMR(blue_channel_1,blue_channel_2))
-								{
-									float P_increase_decrease   = rand.nextFloat();
-									if (P_increase_decrease <= 0.5){
-										if (blue_channel_2<255)
-											blue_channel_2 +=1;
-									}
-									else{
-										if (blue_channel_2>0)
-											blue_channel_2 -=1;
-									}
-								}
-							}
-							else
-							{
-								if (mj==f_LSBMR(blue_channel_1-1,blue_channel_2)){
-									if (blue_channel_1>0)
-										blue_channel_1 -=1;
-								}
-								else{
-									if (blue_channel_1<255)
-										blue_channel_1 +=1;
-								}	
-							}
-
-						}
-
-						// Green channel
-						rand = new Random();
-						P_select   = rand.nextFloat();
-						if (P_select<=Probability)//Simulating the embedding key
-						{
-							int mi = 0;
-							int mj = 0;
-							float P_m   = rand.nextFloat();
-							if (P_m <= 0.5)//Simulating the encrypted message
-								mi = 1;
-
-							P_m   = rand.nextFloat();
-							if (P_m <= 0.5)//Simulating the encrypted message
-								mj = 1;
-							//Check the above mentioned paper for better understanding the code of this function
-							if (mi==LSB_bit(green_channel_1)){
-								if (mj!=f_LSBMR(green_channel_1,green_channel_2))
-								{
-									float P_increase_decrease   = rand.nextFloat();
-									if (P_increase_decrease <= 0.5){
-										if (green_channel_2<255)
-											green_channel_2 +=1;
-									}
-									else{
-										if (green_channel_2>0)
-											green_channel_2 -=1;
-									}
-								}
-							}
-							else
-							{
-								if (mj==f_LSBMR(green_channel_1-1,green_channel_2)){
-									if (green_channel_1>0)
-										green_channel_1 -=1;
-								}
-								else{
-									if (green_channel_1<255)
-										green_channel_1 +=1;
-								}	
-							}
+			// The pixel values are accessed directly on the byte array of the image [see PixelPlanes]
+			// The embedding process itself is done in memory [see Steganography]
 
-						}
-						image.setRGB(xPixel*2, yPixel, 256*256*red_channel_1+256*green_channel_1+blue_channel_1);
-						image.setRGB(xPixel*2, yPixel, 256*256*red_channel_2+256*green_channel_2+blue_channel_2);
-					}        
-				}
-			}
 			//The result [stego image] will be stored in the same input path, and the file name will be changed to:
 			// inputfilename.bmp.LSBMR.bmp
 			
@@ -1232,7 +702,7 @@ public class CreateStego {
 			//"/User/kazemmit/Documents/test.bmp.LSBMR.bmp"
 			
 			File outputfile = new File(BMPFileName+".LSBMR.bmp");
-			ImageIO.write(image, "bmp", outputfile);
+			Steganography.embed("LSBMR", new File(BMPFileName), outputfile, MessageLength, rand, ExactLength, Parallel, false);
 		}
 		catch (Exception err)
 		{
@@ -1240,96 +710,74 @@ public class CreateStego {
 		}
 	}
 
+	public static long LSBMR(PixelPlanes planes, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel)  {
+		/*
+		* Params:
+		* 		1- planes: the cover image [see PixelPlanes]; it is changed in place to the stego image
+		* 		2- MessageLength: number of bits that you want to hide in the input image like 1000
+		* 		3- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		* 		    like new SplittableRandom(1234) [a fixed seed gives exactly the same stego image in every run]
+		* 		4- ExactLength: false: each pair is selected with probability MessageLength/samples [the number of embedded bits is MessageLength on average]
+		* 		    true: exactly MessageLength/2 pairs are selected before embedding [see EmbeddingKey] and only those pairs are visited
+		* 		5- Parallel: true: the bands of the image are processed by all cores [the result is the same as false for the same seed]
+		* Same embedding process as LSBMR(BMPFileName, ...) for an image which is already in memory [nothing is read or written].
+		* Returns the number of embedded message bits [two bits per used pair].
+		*/
+		return Embedders.LSBMR.embed(planes, MessageLength, rand, ExactLength, Parallel, null);
+	}
 
 
-		
-	public static int [] ImgHist(String BMPFileName)  {
-		try{
-			BufferedImage image = ImageIO.read(new File(BMPFileName));
-			int[][] array2D = new int[image.getWidth()][image.getHeight()];
-			ColorSpace cs = image.getColorModel().getColorSpace();
-			boolean isGrayscale = cs.getType() == ColorSpace.TYPE_GRAY;
-			float Probability = 0;
-
-			
 
-			int [] gray_hist = new int[256];
-			int [] red_hist = new int[256];
-			int [] green_hist = new int[256];
-			int [] blue_hist = new int[256];
-			
-			for (int xPixel = 0; xPixel < image.getWidth(); xPixel++)
-			{
-				for (int yPixel = 0; yPixel < image.getHeight(); yPixel++)
-				{
-					Color c = new Color(image.getRGB(xPixel, yPixel));
-					int blue_channel = c.getBlue();
-					int green_channel = c.getGreen();
-					int red_channel = c.getRed();
-					int gray = c.getBlue();
-
-					gray_hist[gray] +=1;
-					red_hist[red_channel] +=1;
-					blue_hist[blue_channel] +=1;
-					green_hist[green_channel] +=1;
-				}
-			}
-			return blue_hist;
 
+		
+	public static int [][] ImgHist(String BMPFileName)  {
+		/*
+		 * Params:
+		 * 		1- BMPFileName: bitmap image like /User/kazemmit/Documents/test.bmp
+		 * Returns the histogram [256 bins] of each channel, indexed by the channel [PixelPlanes.GRAY for gray scale images;
+		 * PixelPlanes.BLUE, GREEN and RED for color images], or null if the image can not be read.
+		 * All channels are counted in one pass and the histograms of each file are cached [see Histograms].
+		 */
+		try{
+			return Histograms.read(new File(BMPFileName)).toArray();
 		}
 		catch (Exception err)
 		{
 			System.out.println(err.toString());
-			return new int[1];
+			return null;
 		}
-		
 	}
 
 	public static double MSE(String Cover,String Stego)  {
+		/*
+		 * Params:
+		 * 		1- Cover: cover bitmap image like /User/kazemmit/Documents/test.bmp
+		 * 		2- Stego: stego bitmap image like /User/kazemmit/Documents/test.bmp.LSB.bmp
+		 * Returns the mean squared error over all samples [all channels of color images], or -1 if the images can not be compared.
+		 * [see Distortion for SSE, PSNR and the statistics of each channel]
+		 */
 		try{
-			BufferedImage image_cover = ImageIO.read(new File(Cover));
-			BufferedImage image_stego = ImageIO.read(new File(Stego));
-
-			ColorSpace cs = image_cover.getColorModel().getColorSpace();
-			boolean isGrayscale = cs.getType() == ColorSpace.TYPE_GRAY;
-
-			int total_diff = 0;
-			for (int xPixel = 0; xPixel < image_cover.getWidth(); xPixel++)
-			{
-				for (int yPixel = 0; yPixel < image_cover.getHeight(); yPixel++)
-				{
-					Color c = new Color(image_cover.getRGB(xPixel, yPixel));
-					int blue_channel_cover = c.getBlue();
-					int green_channel_cover = c.getGreen();
-					int red_channel_cover = c.getRed();
-					int gray_cover = c.getBlue();
-					
-					c = new Color(image_stego.getRGB(xPixel, yPixel));
-					int blue_channel_stego = c.getBlue();
-					int green_channel_stego = c.getGreen();
-					int red_channel_stego = c.getRed();
-					int gray_stego = c.getBlue();
-					
-					if (isGrayscale)
-						total_diff += Math.pow(gray_cover - gray_stego,2);
-					else
-					{
-						total_diff += Math.pow(blue_channel_cover - blue_channel_stego,2);
-						total_diff += Math.pow(green_channel_cover - green_channel_stego,2);
-						total_diff += Math.pow(red_channel_cover - red_channel_stego,2);
-					}
-				}
-			}
-			return total_diff;
+			return Distortion.measure(new File(Cover), new File(Stego), true).mse();
+		}
+		catch (Exception err)
+		{
+			System.out.println(err.toString());
+			return -1;
+		}
+	}
 
+	public static long SSE(String Cover,String Stego)  {
+		// Sum of squared differences of all samples [the value that MSE returned before], or -1 if the images can not be compared
+		try{
+			return Distortion.measure(new File(Cover), new File(Stego), true).sse();
 		}
 		catch (Exception err)
 		{
 			System.out.println(err.toString());
 			return -1;
 		}
-		
 	}
+
 	private static void print_copyRight_message()
 	{
 		System.out.println("\033[31;1m");
@@ -1356,28 +804,80 @@ public class CreateStego {
 		System.out.println("***************************\n\n");
 		
 		System.out.println("**********How to use it (.class file)**********");
-		System.out.println("java CreateStego MethodName FileNamePath MessageLength\n");
+		System.out.println("java CreateStego [-exact] [-parallel] [-patch] [-stream] [-changemap] MethodName FileNamePath MessageLength [Seed]\n");
 		System.out.println("MethodName: it should be one of following options:");
-		System.out.println("   *LSB: for simple LSB steganography method.");
-		System.out.println("   *LSBP: for LSB+ steganography method.");
-		System.out.println("   *LSBPP: for LSB++ steganography method.");
-		System.out.println("   *LSBM: for LSB matching steganography method.");
-		System.out.println("   *LSBMR: for LSB matching revisited steganography method.\n");
+		for (Embedder embedder : Embedders.all())
+			System.out.println("   *" + embedder.name() + ": " + embedder.description());
+		System.out.println("");
 		System.out.println("FileNamePath: it should be the path and file name of the cover bitmap image.");
 		System.out.println("   *If your file is in the current directory, you do not need to specify the path, just provide the file name.\n");
 		System.out.println("   *If your file is not in the current directory, you need to specify the complete file path and name.\n");
 		System.out.println("MessageLength: it should be an integer number which determines the message length in bit.\n");
+		System.out.println("Seed [optional]: an integer number; the same seed gives exactly the same stego image in every run.\n");
+		System.out.println("-exact [optional]: embed exactly MessageLength bits [at most MessageLength for LSB+ and LSB++; by default each pixel is selected with probability MessageLength/pixels].\n");
+		System.out.println("-parallel [optional]: use all cores; the result is the same as the serial run for the same seed.\n");
+		System.out.println("-patch [optional]: copy the cover file and write only the changed bytes [fast for large images and small messages].\n");
+		System.out.println("-stream [optional]: read, embed and write the image strip by strip [for images larger than the memory].\n");
+		System.out.println("-changemap [optional]: also write the changed samples [pixel, channel, delta] as stegoFileName.changes [not with -stream and -sweep].\n");
 		
+		System.out.println("Batch mode [all jobs in one process]:");
+		System.out.println("java CreateStego -batch [-threads N] [-out Directory] [-exact] [-patch] [-changemap] Covers Methods Payloads [Seed]\n");
+		System.out.println("Covers: a directory of bitmap images, or a text file with one cover image path per line.");
+		System.out.println("Methods: comma separated list of methods like LSB,LSBP,LSBPP,LSBM,LSBMR");
+		System.out.println("Payloads: comma separated list of message lengths in bit [like 1000,5000] or bit per pixel [like 0.1bpp,0.4bpp].\n");
+
+		System.out.println("Sweep mode [all payloads in one pass, the changes of a smaller payload are part of every larger payload]:");
+		System.out.println("java CreateStego -sweep [-out Directory] [-patch] MethodName FileNamePath Payloads [Seed]");
+		System.out.println("java CreateStego -batch -sweep [-threads N] [-out Directory] [-patch] Covers Methods Payloads [Seed]");
+		System.out.println("MethodName / Methods: LSB, LSBM, LSBMR [LSB+ and LSB++ compensate the histogram for the whole message].\n");
+
+		System.out.println("Detection mode [chi-square attack, RS analysis and Sample Pairs Analysis of each channel]:");
+		System.out.println("java CreateStego -detect [-threads N] [-parallel] Images");
+		System.out.println("Images: a bitmap image, a directory of bitmap images [covers and stego images] or a text file with one image path per line.\n");
+
+		System.out.println("Change map query [the changes of a rectangle as x y channel delta, and an image of the changes]:");
+		System.out.println("java CreateStego -changes ChangeMapFile [x y width height] [-render Output.bmp]\n");
+
 		System.out.println("Examples:");
 		System.out.println("java CreateStego LSB test.bmp 1000");
 		System.out.println("java CreateStego LSBP /User/kazemmit/Document/test.bmp 2000");
 		System.out.println("java CreateStego LSBPP /User/kazemmit/Document/test.bmp 1500");
 		System.out.println("java CreateStego LSBM /User/kazemmit/Document/test.bmp 2000");
 		System.out.println("java CreateStego LSBMR test.bmp 1000");
+		System.out.println("java CreateStego LSBM test.bmp 1000 1234");
+		System.out.println("java CreateStego -exact LSB test.bmp 1000 1234");
+		System.out.println("java CreateStego -batch -threads 8 /User/kazemmit/Document/covers LSB,LSBPP,LSBM 0.1bpp,0.4bpp 1234");
+		System.out.println("java CreateStego -sweep LSBM test.bmp 0.05bpp,0.1bpp,0.2bpp,0.3bpp,0.4bpp,0.5bpp 1234");
+		System.out.println("java CreateStego -detect -threads 8 /User/kazemmit/Document/covers");
+		System.out.println("java CreateStego -changemap LSBM test.bmp 1000 1234");
+		System.out.println("java CreateStego -changes test.bmp.LSBM.bmp.changes 0 0 64 64 -render test.bmp.LSBM.changes.bmp");
 		System.out.println("\033[31;1m\033[0m");
 		
 	}
 	
+	static boolean isMethodName(String MethodName) {
+		// The built-in methods and the methods found by ServiceLoader [see Embedders]
+		return Embedders.get(MethodName) != null;
+	}
+
+	static long embed(String MethodName, PixelPlanes planes, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel)  {
+		return embed(MethodName, planes, MessageLength, rand, ExactLength, Parallel, null);
+	}
+
+	static long embed(String MethodName, PixelPlanes planes, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, int[][] cover_histograms)  {
+		/*
+		 * Params:
+		 * 		1- MethodName: LSB, LSBP, LSBPP, LSBM, LSBMR or a registered method [see Embedders]
+		 * 		2- planes: the cover image; it is changed in place to the stego image
+		 * 		3..6- same as the embedding methods
+		 * 		7- cover_histograms: precalculated histograms of the cover image for LSB+ and LSB++ [or null]
+		 * Runs the embedding process of the method on an image which is already in memory [see Steganography];
+		 * returns the number of embedded message bits.
+		 */
+		Embedder embedder = Embedders.require(MethodName);
+		return embedder.embed(planes, MessageLength, rand, ExactLength, Parallel, embedder.usesCoverHistograms() ? cover_histograms : null);
+	}
+	
 	private static String getFileExtension(File file) {
         String fileName = file.getName();
         if(fileName.lastIndexOf(".") != -1 && fileName.lastIndexOf(".") != 0)
@@ -1387,6 +887,197 @@ public class CreateStego {
 	
 	public static void main(String[] args)  {
 		
+		// Optional switches can be given anywhere in the command line, the other arguments keep their order
+		//   -exact: exactly MessageLength bits are embedded [see EmbeddingKey]
+		//   -parallel: the image is processed by all cores [same result as the serial run for the same seed]
+		//   -batch: batch [dataset] mode, see BatchRunner
+		//   -threads N: number of worker threads of the batch mode
+		//   -out Directory: output directory of the batch mode
+		//   -patch: the cover file is copied and only the changed bytes are written [see BmpCodec.patch]
+		//   -stream: the image is embedded strip by strip, for images larger than the heap [see StreamingStego]
+		//   -sweep: several payloads of a cover in one pass with nested changes [see PayloadSweep]
+		//   -detect: chi-square, RS and SPA scores of an image or of all images of a directory [see Steganalysis]
+		//   -changemap: the change map of each stego image is written next to it [see ChangeMap]
+		//   -changes: query mode of a change map file, -render File: image of the changes
+		boolean exactLength = false;
+		boolean parallel = false;
+		boolean patch = false;
+		boolean stream = false;
+		boolean sweep = false;
+		boolean batch = false;
+		boolean detect = false;
+		boolean changeMap = false;
+		boolean changes = false;
+		File renderFile = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		File outputDirectory = null;
+		ArrayList<String> positional = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++){
+			String arg = args[i].trim();
+			if (arg.equalsIgnoreCase("-exact"))
+				exactLength = true;
+			else if (arg.equalsIgnoreCase("-parallel"))
+				parallel = true;
+			else if (arg.equalsIgnoreCase("-batch"))
+				batch = true;
+			else if (arg.equalsIgnoreCase("-patch"))
+				patch = true;
+			else if (arg.equalsIgnoreCase("-stream"))
+				stream = true;
+			else if (arg.equalsIgnoreCase("-sweep"))
+				sweep = true;
+			else if (arg.equalsIgnoreCase("-detect"))
+				detect = true;
+			else if (arg.equalsIgnoreCase("-changemap"))
+				changeMap = true;
+			else if (arg.equalsIgnoreCase("-changes"))
+				changes = true;
+			else if (arg.equalsIgnoreCase("-render") && i+1 < args.length)
+				renderFile = new File(args[++i]);
+			else if (arg.equalsIgnoreCase("-threads") && i+1 < args.length){
+				try{
+					threads = Math.max(1, Integer.parseInt(args[++i].trim()));
+				}
+				catch(Exception err)
+				{
+					System.out.println("\033[31;1m");
+					System.out.println("Only an integer number is acceptable as number of threads like:");
+					System.out.println("java CreateStego -batch -threads 8 covers LSB,LSBM 1000,5000");
+					System.out.println("\033[31;1m\033[0m");
+					System.exit(-1);
+				}
+			}
+			else if (arg.equalsIgnoreCase("-out") && i+1 < args.length)
+				outputDirectory = new File(args[++i]);
+			else
+				positional.add(args[i]);
+		}
+		args = positional.toArray(new String[0]);
+
+		if (changes){
+			// ChangeMapFile [x y width height]: the summary of the change map, and the changes of the rectangle
+			if (args.length != 1 && args.length != 5){
+				print_message();
+				print_copyRight_message();
+				System.exit(-1);
+			}
+			try{
+				ChangeMap change_map = ChangeMap.read(new File(args[0]));
+				System.out.println(change_map);
+				if (args.length == 5){
+					int x = Integer.parseInt(args[1].trim());
+					int y = Integer.parseInt(args[2].trim());
+					int w = Integer.parseInt(args[3].trim());
+					int h = Integer.parseInt(args[4].trim());
+					change_map.forEach(x, y, w, h, (pixel, channel, delta) ->
+						System.out.println((pixel % change_map.width) + "\t" + (pixel / change_map.width) + "\t" + channel + "\t" + delta));
+				}
+				if (renderFile != null)
+					change_map.render().write(renderFile);
+				System.exit(1);
+			}
+			catch(Exception err){
+				System.out.println("\033[31;1m");
+				System.out.println(err.toString());
+				System.out.println("\033[31;1m\033[0m");
+				System.exit(-1);
+			}
+		}
+
+		if (detect){
+			if (args.length < 1){
+				print_message();
+				print_copyRight_message();
+				System.exit(-1);
+			}
+			try{
+				File images = new File(args[0]);
+				int failed;
+				if (images.isFile() && getFileExtension(images).toLowerCase().equals("bmp"))
+					failed = Steganalysis.runImage(images, parallel) ? 0 : 1;
+				else
+					failed = Steganalysis.run(images, threads, parallel);
+				System.exit(failed == 0 ? 1 : -1);
+			}
+			catch(Exception err){
+				System.out.println("\033[31;1m");
+				System.out.println(err.toString());
+				System.out.println("\033[31;1m\033[0m");
+				System.exit(-1);
+			}
+		}
+
+		if (batch){
+			if (args.length < 3){
+				print_message();
+				print_copyRight_message();
+				System.exit(-1);
+			}
+			Long seed = null;
+			if (args.length > 3){
+				try{
+					seed = Long.parseLong(args[3].trim());
+				}
+				catch(Exception err)
+				{
+					System.out.println("\033[31;1m");
+					System.out.println("Only an integer number is acceptable as seed like:");
+					System.out.println("java CreateStego -batch covers LSB,LSBM 1000,5000 1234");
+					System.out.println("\033[31;1m\033[0m");
+					System.exit(-1);
+				}
+			}
+			try{
+				int failed = BatchRunner.run(new File(args[0]), args[1].split(","), args[2].split(","), seed, exactLength, threads, outputDirectory, patch, sweep, changeMap);
+				System.exit(failed == 0 ? 1 : -1);
+			}
+			catch(Exception err){
+				System.out.println("\033[31;1m");
+				System.out.println(err.toString());
+				System.out.println("\033[31;1m\033[0m");
+				System.exit(-1);
+			}
+		}
+
+		if (sweep){
+			if (args.length < 3){
+				print_message();
+				print_copyRight_message();
+				System.exit(-1);
+			}
+			RandomGenerator rand = new SplittableRandom();
+			if (args.length > 3){
+				try{
+					rand = new SplittableRandom(Long.parseLong(args[3].trim()));
+				}
+				catch(Exception err)
+				{
+					System.out.println("\033[31;1m");
+					System.out.println("Only an integer number is acceptable as seed like:");
+					System.out.println("java CreateStego -sweep LSBM test.bmp 0.1bpp,0.2bpp,0.4bpp 1234");
+					System.out.println("\033[31;1m\033[0m");
+					System.exit(-1);
+				}
+			}
+			try{
+				// The stego images are stored like the batch mode: inputfilename.bmp.payload.MethodName.bmp
+				if (changeMap)
+					throw new IllegalArgumentException("The change map is not available in the sweep mode");
+				for (String payload : args[2].split(","))
+					BatchRunner.parsePayload(payload);
+				if (outputDirectory != null)
+					outputDirectory.mkdirs();
+				PayloadSweep.embed(args[0], new File(args[1]), args[2].split(","), rand, outputDirectory, patch);
+				System.exit(1);
+			}
+			catch(Exception err){
+				System.out.println("\033[31;1m");
+				System.out.println(err.toString());
+				System.out.println("\033[31;1m\033[0m");
+				System.exit(-1);
+			}
+		}
+
 		if(args.length < 3)
 	    {
 			print_message();
@@ -1397,7 +1088,7 @@ public class CreateStego {
 		else 
 	    {
 			args[0] = args[0].trim();					
-			if ((args[0].toUpperCase().equals("LSB")) || (args[0].toUpperCase().equals("LSBP"))|| (args[0].toUpperCase().equals("LSBPP"))|| (args[0].toUpperCase().equals("LSBM"))|| (args[0].toUpperCase().equals("LSBMR")))
+			if (isMethodName(args[0]))
 			{
 				File f = new File(args[1]);
 				if(f.exists() && !f.isDirectory()) { 
@@ -1414,29 +1105,37 @@ public class CreateStego {
 							System.out.println("\033[31;1m\033[0m");
 							System.exit(-1);	
 						}
-						try{
-							switch (args[0].toUpperCase()){
-								case "LSB":
-									LSB(args[1],messageLength);
-									break;
-								case "LSBP":
-									LSBPLUS_LSBPLUSPLUS(args[1],messageLength,false);
-									break;
-								case "LSBPP":
-									LSBPLUS_LSBPLUSPLUS(args[1],messageLength,true);
-									break;
-								case "LSBM":
-									LSBM(args[1],messageLength);
-									break;
-								case "LSBMR":
-									LSBMR(args[1],messageLength);
-									break;
+						// Optional seed: the same seed gives exactly the same stego image in every run
+						RandomGenerator rand = new SplittableRandom();
+						if (args.length > 3){
+							try{
+								rand = new SplittableRandom(Long.parseLong(args[3].trim()));
+							}
+							catch(Exception err)
+							{
+								System.out.println("\033[31;1m");
+								System.out.println("Only an integer number is acceptable as seed like:");						
+								System.out.println("java CreateStego LSBPP test.bmp 1500 1234");	
+								System.out.println("\033[31;1m\033[0m");
+								System.exit(-1);	
 							}
+						}
+						try{
+							// The stego image is stored as inputfilename.bmp.MethodName.bmp [like inputfilename.bmp.LSBPP.bmp]
+							File outputfile = new File(args[1]+"."+args[0].toUpperCase()+".bmp");
+							// With -changemap, the change map is stored as inputfilename.bmp.MethodName.bmp.changes
+							if (stream && changeMap)
+								throw new IllegalArgumentException("The change map is not available in the streaming mode");
+							if (stream)
+								StreamingStego.embed(args[0], new File(args[1]), outputfile, messageLength, rand, exactLength);
+							else
+								Steganography.embed(args[0], new File(args[1]), outputfile, messageLength, rand, exactLength, parallel, patch, changeMap);
 							System.exit(1);							
 						}
 						catch(Exception err){
 							System.out.println("\033[31;1m");
 							System.out.println("Something wrong happended during embedding process!");						
+							System.out.println(err.toString());
 							System.out.println("Check the image file to be valid and try again");
 							System.out.println("\033[31;1m\033[0m");
 							System.exit(-1);	
@@ -1465,11 +1164,8 @@ public class CreateStego {
 			else{
 				System.out.println("\033[31;1m");
 				System.out.println("Method name should be one of following options:");
-				System.out.println("   LSB: for simple LSB steganography method.");
-				System.out.println("   LSBP: for LSB+ steganography method.");
-				System.out.println("   LSBPP: for LSB++ steganography method.");
-				System.out.println("   LSBM: for LSB matching steganography method.");
-				System.out.println("   LSBMR: for LSB matching revisited steganography method.");
+				for (Embedder embedder : Embedders.all())
+					System.out.println("   " + embedder.name() + ": " + embedder.description());
 				System.out.println("\033[31;1m\033[0m");
 				System.exit(-1);
 			}
@@ -0,0 +1,166 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.io.*;
+import java.util.stream.IntStream;
+
+
+public class Distortion {
+	/*
+	 * Distortion of a stego image: SSE, MSE, PSNR and the number of changed samples of each channel.
+	 *
+	 * The samples are compared directly in the byte arrays of the images [see PixelPlanes], with long accumulators
+	 * [the SSE of a large color image does not fit in an int]. The image is split in bands of CreateStego.BAND_ROWS rows;
+	 * with Parallel the bands are measured by all cores and their sums are added [the result does not depend on Parallel].
+	 *
+	 * Example:
+	 * 		Distortion distortion = Distortion.measure(new File("test.bmp"), new File("test.bmp.LSB.bmp"), true);
+	 * 		System.out.println(distortion.mse() + " " + distortion.psnr());
+	 */
+
+	// Sum of squared differences of each channel, indexed like PixelPlanes [GRAY, or BLUE, GREEN and RED]
+	public final long[] sse;
+	// Number of changed samples of each channel
+	public final long[] changedSamples;
+	// Number of samples of each channel [width*height]
+	public final long samplesPerChannel;
+
+	private Distortion(long[] sse, long[] changedSamples, long samplesPerChannel) {
+		this.sse = sse;
+		this.changedSamples = changedSamples;
+		this.samplesPerChannel = samplesPerChannel;
+	}
+
+	public static Distortion measure(File cover, File stego, boolean Parallel) throws IOException {
+		return measure(PixelPlanes.read(cover), PixelPlanes.read(stego), Parallel);
+	}
+
+	public static Distortion measure(PixelPlanes cover, PixelPlanes stego, boolean Parallel) {
+		/*
+		 * Params:
+		 * 		1- cover: the cover image
+		 * 		2- stego: the stego image [same size and number of channels as the cover image]
+		 * 		3- Parallel: true: the bands are measured by all cores
+		 */
+		if (cover.width != stego.width || cover.height != stego.height || cover.channels != stego.channels)
+			throw new IllegalArgumentException("The cover and stego images should have the same size and channels: "
+					+ cover.width + "x" + cover.height + "x" + cover.channels + ", " + stego.width + "x" + stego.height + "x" + stego.channels);
+		int channels = cover.channels;
+		int row_samples = cover.width*channels;
+		byte[] cover_samples = cover.samples;
+		byte[] stego_samples = stego.samples;
+
+		// sums[channel] is the SSE and sums[channels + channel] the number of changed samples of the channel
+		int bands = (cover.height + CreateStego.BAND_ROWS - 1) / CreateStego.BAND_ROWS;
+		IntStream band_stream = IntStream.range(0, bands);
+		if (Parallel)
+			band_stream = band_stream.parallel();
+		long[] sums = band_stream.collect(() -> new long[2*channels],
+				(sum, band) -> {
+					int start = band*CreateStego.BAND_ROWS*row_samples;
+					int end = Math.min(cover.height, (band + 1)*CreateStego.BAND_ROWS)*row_samples;
+					for (int block = start; block < end; block += BLOCK_PIXELS*channels)
+						measureBlock(cover_samples, stego_samples, block, Math.min(end, block + BLOCK_PIXELS*channels), channels, sum);
+				},
+				(sum, other) -> {
+					for (int i = 0; i < sum.length; i++)
+						sum[i] += other[i];
+				});
+
+		long[] sse = new long[channels];
+		long[] changed = new long[channels];
+		System.arraycopy(sums, 0, sse, 0, channels);
+		System.arraycopy(sums, channels, changed, 0, channels);
+		return new Distortion(sse, changed, (long) cover.width*cover.height);
+	}
+
+	// The squared differences of one block are added in int [32768 * 255 * 255 < 2^31], then in long
+	private static final int BLOCK_PIXELS = 32768;
+
+	private static void measureBlock(byte[] cover_samples, byte[] stego_samples, int start, int end, int channels, long[] sum) {
+		// Adds the SSE and the number of changed samples of the samples [start, end) to sum [one pass, no branch]
+		if (channels == 1){
+			int sse = 0;
+			int changed = 0;
+			for (int position = start; position < end; position++){
+				int diff = (cover_samples[position] & 0xFF) - (stego_samples[position] & 0xFF);
+				sse += diff*diff;
+				changed += (diff | -diff) >>> 31;
+			}
+			sum[PixelPlanes.GRAY] += sse;
+			sum[1] += changed;
+			return;
+		}
+		int sse_blue = 0, sse_green = 0, sse_red = 0;
+		int changed_blue = 0, changed_green = 0, changed_red = 0;
+		for (int position = start; position < end; position += 3){
+			int diff_blue = (cover_samples[position + PixelPlanes.BLUE] & 0xFF) - (stego_samples[position + PixelPlanes.BLUE] & 0xFF);
+			int diff_green = (cover_samples[position + PixelPlanes.GREEN] & 0xFF) - (stego_samples[position + PixelPlanes.GREEN] & 0xFF);
+			int diff_red = (cover_samples[position + PixelPlanes.RED] & 0xFF) - (stego_samples[position + PixelPlanes.RED] & 0xFF);
+			sse_blue += diff_blue*diff_blue;
+			sse_green += diff_green*diff_green;
+			sse_red += diff_red*diff_red;
+			// 1 if the difference is not 0
+			changed_blue += (diff_blue | -diff_blue) >>> 31;
+			changed_green += (diff_green | -diff_green) >>> 31;
+			changed_red += (diff_red | -diff_red) >>> 31;
+		}
+		sum[PixelPlanes.BLUE] += sse_blue;
+		sum[PixelPlanes.GREEN] += sse_green;
+		sum[PixelPlanes.RED] += sse_red;
+		sum[3 + PixelPlanes.BLUE] += changed_blue;
+		sum[3 + PixelPlanes.GREEN] += changed_green;
+		sum[3 + PixelPlanes.RED] += changed_red;
+	}
+
+	public long sse() {
+		long total = 0;
+		for (long value : sse)
+			total += value;
+		return total;
+	}
+
+	public long totalChangedSamples() {
+		long total = 0;
+		for (long changed : changedSamples)
+			total += changed;
+		return total;
+	}
+
+	public double mse() {
+		// Mean squared error over all samples of all channels
+		return (double) sse() / (samplesPerChannel*sse.length);
+	}
+
+	public double mse(int channel) {
+		return (double) sse[channel] / samplesPerChannel;
+	}
+
+	public double psnr() {
+		// Peak signal to noise ratio in dB [infinite if the images are the same]
+		return psnr(mse());
+	}
+
+	public double psnr(int channel) {
+		return psnr(mse(channel));
+	}
+
+	static double psnr(double mse) {
+		if (mse == 0)
+			return Double.POSITIVE_INFINITY;
+		return 10*Math.log10(255.0*255.0 / mse);
+	}
+
+	@Override
+	public String toString() {
+		return "SSE " + sse() + ", MSE " + mse() + ", PSNR " + psnr() + " dB, " + totalChangedSamples() + " samples changed";
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.util.random.RandomGenerator;
+
+
+public interface Embedder {
+	/*
+	 * One embedding method of CreateStego [see Embedders for the registry of the methods].
+	 *
+	 * Most methods only change the selected samples or pairs of samples; they should extend ScanEmbedder.Samples or
+	 * ScanEmbedder.Pairs and only implement the embedding of one sample [or pair], the scan is shared by all of them.
+	 */
+
+	// Name of the method on the command line, like LSB [upper case]
+	String name();
+
+	// Description of the method for the usage message, like "for simple LSB steganography method."
+	String description();
+
+	long embed(PixelPlanes planes, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, int[][] cover_histograms);
+	/*
+	 * Params:
+	 * 		1- planes: the cover image [see PixelPlanes]; it is changed in place to the stego image
+	 * 		2- MessageLength: number of bits that should be hidden in the image like 1000
+	 * 		3- rand: source of the random numbers which simulate the embedding key and the encrypted message
+	 * 		4- ExactLength: embed exactly MessageLength bits [see EmbeddingKey]
+	 * 		5- Parallel: use all cores [the result should be the same as false for the same seed]
+	 * 		6- cover_histograms: histogram of each channel of the cover image [indexed by the channel], or null
+	 * 		    [only given if usesCoverHistograms is true, see CoverImage]
+	 * Returns the number of embedded message bits.
+	 */
+
+	default long embed(PixelPlanes planes, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, int[][] cover_histograms, EmbeddingReport report) {
+		/*
+		 * Same as embed, and the statistics of the embedding process are added to report [if it is not null].
+		 * The methods of CreateStego collect them while they change the samples; for other methods the image is
+		 * compared with a copy of the cover image.
+		 */
+		if (report == null)
+			return embed(planes, MessageLength, rand, ExactLength, Parallel, cover_histograms);
+		PixelPlanes cover = planes.copy();
+		long embedded = embed(planes, MessageLength, rand, ExactLength, Parallel, cover_histograms);
+		report.compare(cover, planes);
+		report.embeddedBits += embedded;
+		return embedded;
+	}
+
+	default boolean usesCoverHistograms() {
+		// true if embed uses the histograms of the cover image [like LSB+ and LSB++]
+		return false;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.random.RandomGenerator;
+
+
+public class Embedders {
+	/*
+	 * Registry of the embedding methods [see Embedder].
+	 *
+	 * The methods of CreateStego [LSB, LSBP, LSBPP, LSBM and LSBMR] are always registered. Other methods are found by
+	 * ServiceLoader: a jar [or directory] on the class path with the file META-INF/services/Embedder, which contains the
+	 * class name of each embedder [a public class with a public constructor without parameters], one per line.
+	 * They can also be added by register. Method names are not case sensitive.
+	 */
+
+	public static final Embedder LSB = new ScanEmbedder.Samples("LSB", "for simple LSB steganography method.") {
+		@Override
+		protected int embedSample(int value, RandomGenerator rand) {
+			return CreateStego.LSB_value(value, rand);
+		}
+
+		@Override
+		int embedRow(byte[] samples, int row_start, int yPixel, int width, int channels, float Probability, BitSet key, RandomGenerator rand, EmbeddingReport report) {
+			// Without the embedding key, the row is embedded by the SIMD kernel if it is available [see LSBKernel; the changes are not reported]
+			if (key == null && report == null && LSBKernel.VECTOR != null)
+				return LSBKernel.VECTOR.embed(samples, row_start, width*channels, Probability, rand);
+			return super.embedRow(samples, row_start, yPixel, width, channels, Probability, key, rand, report);
+		}
+	};
+
+	public static final Embedder LSBP = new LSBPlus(false);
+
+	public static final Embedder LSBPP = new LSBPlus(true);
+
+	public static final Embedder LSBM = new ScanEmbedder.Samples("LSBM", "for LSB matching steganography method.") {
+		@Override
+		protected int embedSample(int value, RandomGenerator rand) {
+			return CreateStego.LSBM_value(value, rand);
+		}
+
+		@Override
+		int embedRow(byte[] samples, int row_start, int yPixel, int width, int channels, float Probability, BitSet key, RandomGenerator rand, EmbeddingReport report) {
+			// Without the embedding key, the row is embedded by the SIMD kernel if it is available [see LSBMKernel; the changes are not reported]
+			if (key == null && report == null && LSBMKernel.VECTOR != null)
+				return LSBMKernel.VECTOR.embed(samples, row_start, width*channels, Probability, rand);
+			return super.embedRow(samples, row_start, yPixel, width, channels, Probability, key, rand, report);
+		}
+	};
+
+	public static final Embedder LSBMR = new ScanEmbedder.Pairs("LSBMR", "for LSB matching revisited steganography method.") {
+		@Override
+		protected void embedPair(byte[] samples, int position_1, int position_2, RandomGenerator rand) {
+			CreateStego.LSBMR_pair(samples, position_1, position_2, rand);
+		}
+	};
+
+	private static final Map<String, Embedder> embedders = new LinkedHashMap<String, Embedder>();
+
+	static {
+		register(LSB);
+		register(LSBP);
+		register(LSBPP);
+		register(LSBM);
+		register(LSBMR);
+		try{
+			for (Embedder embedder : ServiceLoader.load(Embedder.class))
+				register(embedder);
+		}
+		catch (ServiceConfigurationError | IllegalArgumentException err)
+		{
+			System.out.println(err.toString());
+		}
+	}
+
+	public static synchronized void register(Embedder embedder) {
+		String name = embedder.name().trim().toUpperCase();
+		if (name.isEmpty() || embedders.containsKey(name))
+			throw new IllegalArgumentException("An embedding method with this name is already registered: " + name);
+		embedders.put(name, embedder);
+	}
+
+	public static synchronized Embedder get(String MethodName) {
+		// Returns the method, or null if there is no method with this name
+		return embedders.get(MethodName.trim().toUpperCase());
+	}
+
+	public static Embedder require(String MethodName) {
+		Embedder embedder = get(MethodName);
+		if (embedder == null)
+			throw new IllegalArgumentException("Unknown method: " + MethodName);
+		return embedder;
+	}
+
+	public static synchronized List<Embedder> all() {
+		// All methods in the order of registration
+		return new ArrayList<Embedder>(embedders.values());
+	}
+
+	static final class LSBPlus implements Embedder {
+		// LSB+ and LSB++ [see CreateStego.LSBPLUS_LSBPLUSPLUS]
+		final boolean LSBPP;
+
+		LSBPlus(boolean LSBPP) {
+			this.LSBPP = LSBPP;
+		}
+
+		@Override
+		public String name() {
+			return LSBPP ? "LSBPP" : "LSBP";
+		}
+
+		@Override
+		public String description() {
+			return LSBPP ? "for LSB++ steganography method." : "for LSB+ steganography method.";
+		}
+
+		@Override
+		public long embed(PixelPlanes planes, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, int[][] cover_histograms) {
+			return CreateStego.LSBPLUS_LSBPLUSPLUS(planes, MessageLength, LSBPP, rand, ExactLength, Parallel, cover_histograms);
+		}
+
+		@Override
+		public long embed(PixelPlanes planes, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, int[][] cover_histograms, EmbeddingReport report) {
+			return CreateStego.LSBPLUS_LSBPLUSPLUS(planes, MessageLength, LSBPP, rand, ExactLength, Parallel, cover_histograms, report);
+		}
+
+		@Override
+		public boolean usesCoverHistograms() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.util.BitSet;
+import java.util.random.RandomGenerator;
+
+
+public class EmbeddingKey {
+	/*
+	 * Simulation of the embedding key for the exact length mode of the embedders.
+	 *
+	 * By default, every embedder selects each pixel [or each channel of each pixel] independently with probability
+	 * MessageLength / (number of samples), so the number of embedded bits is only equal to MessageLength on average
+	 * and one random number is drawn for every sample of the image.
+	 * In the exact length mode, exactly MessageLength distinct positions are drawn before the embedding process
+	 * [Floyd's sampling algorithm], and the scan embedders only visit those positions [in storage order].
+	 * Every position carries one message bit, except for LSB+ and LSB++: the bit of a position which can not carry it is
+	 * carried to the next usable sample of the same channel [drawn or not]; when that sample was drawn itself the two bits
+	 * share it, so they embed at most MessageLength bits [see CreateStego.LSBPLUS_LSBPLUSPLUS].
+	 */
+
+	public static BitSet select(int positions, int count, RandomGenerator rand) {
+		/*
+		 * Params:
+		 * 		1- positions: number of positions that can be used [e.g. width*height*channels]
+		 * 		2- count: number of positions that should be selected [if it is larger than positions, all positions are selected]
+		 * 		3- rand: source of the random numbers
+		 * Returns a set with exactly min(count, positions) selected positions.
+		 * Only count random numbers are drawn, so the cost does not depend on the image size [except for the bitmap itself].
+		 */
+		BitSet selected = new BitSet(positions);
+		if (count >= positions){
+			selected.set(0, positions);
+			return selected;
+		}
+		// Floyd's algorithm: every subset of size count has the same probability
+		for (int j = positions - count; j < positions; j++){
+			int t = rand.nextInt(j + 1);
+			if (selected.get(t))
+				selected.set(j);
+			else
+				selected.set(t);
+		}
+		return selected;
+	}
+
+	public static int[] order(int positions, int count, RandomGenerator rand) {
+		/*
+		 * Params:
+		 * 		1- positions: number of positions that can be used
+		 * 		2- count: length of the visiting order [if it is larger than positions, all positions are used]
+		 * 		3- rand: source of the random numbers
+		 * Returns the first min(count, positions) positions of a random permutation of all positions [visiting order].
+		 * Every prefix of the order is a random set of positions like select, and a longer prefix contains the shorter
+		 * ones, so several message lengths can use one order [see PayloadSweep].
+		 */
+		BitSet selected = select(positions, count, rand);
+		int[] order = new int[selected.cardinality()];
+		int i = 0;
+		for (int position = selected.nextSetBit(0); position >= 0; position = selected.nextSetBit(position+1))
+			order[i++] = position;
+		// Fisher-Yates shuffle: a random set in a random order is a prefix of a random permutation
+		for (i = order.length - 1; i > 0; i--){
+			int j = rand.nextInt(i + 1);
+			int t = order[i];
+			order[i] = order[j];
+			order[j] = t;
+		}
+		return order;
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+public class EmbeddingReport {
+	/*
+	 * Statistics of one embedding process, collected by the embedder while it changes the samples [see Embedder]:
+	 * no extra pass over the image, and the cover and stego files do not have to be decoded again to measure them.
+	 *
+	 * All arrays are indexed by the channel like PixelPlanes [GRAY, or BLUE, GREEN and RED].
+	 * Each band [or channel] of a parallel embedding process collects its own report, which is added at the end,
+	 * so the report does not depend on Parallel.
+	 * A report made by withChangeMap also keeps the position and the delta of every change [see ChangeMap].
+	 */
+
+	public final int channels;
+	// Number of samples of each channel [width*height]
+	public final long samplesPerChannel;
+	// Number of changed samples
+	public final long[] changedSamples;
+	// Number of +1 and -1 changes [the +-1 change histogram]
+	public final long[] increased;
+	public final long[] decreased;
+	// Sum of squared differences between the cover and the stego samples
+	public final long[] sse;
+	long embeddedBits;
+	// LSB+ and LSB++: changes made to restore the cover histogram, and selected samples which could not carry a bit
+	long compensationChanges;
+	long failedToHideSkips;
+	// The changed samples with their position [null if the change map is not collected, see ChangeMap]
+	private ChangeMap.Builder changes;
+	private ChangeMap change_map;
+
+	public EmbeddingReport(int channels, long samplesPerChannel) {
+		this.channels = channels;
+		this.samplesPerChannel = samplesPerChannel;
+		this.changedSamples = new long[channels];
+		this.increased = new long[channels];
+		this.decreased = new long[channels];
+		this.sse = new long[channels];
+	}
+
+	static EmbeddingReport of(PixelPlanes planes) {
+		return new EmbeddingReport(planes.channels, (long) planes.width*planes.height);
+	}
+
+	public static EmbeddingReport withChangeMap(int width, int height, int channels) {
+		// A report which also collects the change map of the stego image [see changeMap]
+		EmbeddingReport report = new EmbeddingReport(channels, (long) width*height);
+		report.changes = new ChangeMap.Builder(width, height, channels);
+		return report;
+	}
+
+	EmbeddingReport part() {
+		// An empty report for one band [or channel] of a parallel embedding process, which is added to this report at the end
+		EmbeddingReport part = new EmbeddingReport(channels, 0);
+		if (changes != null)
+			part.changes = new ChangeMap.Builder(changes.width, changes.height, changes.channels);
+		return part;
+	}
+
+	void change(int sample, int cover, int stego) {
+		// The sample [pixel*channels + channel] was changed from cover to stego [nothing is counted if they are the same]
+		int diff = stego - cover;
+		if (diff == 0)
+			return;
+		int channel = sample % channels;
+		if (changes != null)
+			changes.add(sample, diff);
+		changedSamples[channel]++;
+		sse[channel] += diff*diff;
+		if (diff == 1)
+			increased[channel]++;
+		else if (diff == -1)
+			decreased[channel]++;
+	}
+
+	void compare(PixelPlanes cover, PixelPlanes stego) {
+		// Adds all changes between the cover and the stego image [for embedders which do not report their changes]
+		byte[] cover_samples = cover.samples;
+		byte[] stego_samples = stego.samples;
+		for (int position = 0; position < cover_samples.length; position++){
+			if (cover_samples[position] != stego_samples[position])
+				change(position, cover_samples[position] & 0xFF, stego_samples[position] & 0xFF);
+		}
+	}
+
+	EmbeddingReport copy() {
+		EmbeddingReport copy = new EmbeddingReport(channels, samplesPerChannel);
+		if (changes != null)
+			copy.changes = new ChangeMap.Builder(changes.width, changes.height, changes.channels);
+		copy.add(this);
+		return copy;
+	}
+
+	synchronized void add(EmbeddingReport other) {
+		for (int channel = 0; channel < channels; channel++){
+			changedSamples[channel] += other.changedSamples[channel];
+			increased[channel] += other.increased[channel];
+			decreased[channel] += other.decreased[channel];
+			sse[channel] += other.sse[channel];
+		}
+		embeddedBits += other.embeddedBits;
+		compensationChanges += other.compensationChanges;
+		failedToHideSkips += other.failedToHideSkips;
+		if (changes != null && other.changes != null)
+			changes.add(other.changes);
+		change_map = null;
+	}
+
+	public synchronized ChangeMap changeMap() {
+		// The change map of the stego image, or null if it was not collected [see withChangeMap]
+		if (change_map == null && changes != null)
+			change_map = changes.build();
+		return change_map;
+	}
+
+	public long embeddedBits() {
+		return embeddedBits;
+	}
+
+	public long compensationChanges() {
+		return compensationChanges;
+	}
+
+	public long failedToHideSkips() {
+		return failedToHideSkips;
+	}
+
+	public long totalChangedSamples() {
+		long total = 0;
+		for (long changed : changedSamples)
+			total += changed;
+		return total;
+	}
+
+	public long sse() {
+		long total = 0;
+		for (long value : sse)
+			total += value;
+		return total;
+	}
+
+	public double mse() {
+		return (double) sse() / (samplesPerChannel*channels);
+	}
+
+	public double psnr() {
+		return Distortion.psnr(mse());
+	}
+
+	@Override
+	public String toString() {
+		String report = embeddedBits + " bits, " + totalChangedSamples() + " samples changed, SSE " + sse() + ", PSNR " + psnr() + " dB";
+		if (compensationChanges > 0 || failedToHideSkips > 0)
+			report += ", " + compensationChanges + " compensation changes, " + failedToHideSkips + " failed_to_hide skips";
+		return report;
+	}
+}
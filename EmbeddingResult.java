@@ -0,0 +1,83 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+public class EmbeddingResult {
+	/*
+	 * Stego image and statistics of one embedding process [see Steganography].
+	 *
+	 * The statistics are collected by the embedder only if they were requested [see Steganography.embed with
+	 * WithReport]; otherwise the embedder runs without a report [so LSB and LSBM can use the SIMD kernels] and the
+	 * statistics are computed from the cover and the stego image when report is first called.
+	 */
+
+	// The stego image [stego.image is the BufferedImage, stego.samples the byte array]
+	public final PixelPlanes stego;
+	public final String method;
+	// Requested message length in bit
+	public final int messageLength;
+	// Number of message bits which were really embedded [without exact length mode, it is MessageLength only on average]
+	public final long embeddedBits;
+	// The cover image, for the statistics which were not collected while embedding [it should not be changed before]
+	private final PixelPlanes cover;
+	private EmbeddingReport report;
+
+	EmbeddingResult(PixelPlanes stego, String method, int messageLength, EmbeddingReport report) {
+		this.stego = stego;
+		this.method = method;
+		this.messageLength = messageLength;
+		this.embeddedBits = report.embeddedBits();
+		this.cover = null;
+		this.report = report;
+	}
+
+	EmbeddingResult(PixelPlanes stego, String method, int messageLength, long embeddedBits, PixelPlanes cover) {
+		// The statistics are computed on demand from cover and stego
+		this.stego = stego;
+		this.method = method;
+		this.messageLength = messageLength;
+		this.embeddedBits = embeddedBits;
+		this.cover = cover;
+	}
+
+	public synchronized EmbeddingReport report() {
+		/*
+		 * All statistics of the embedding process [+-1 changes, SSE, LSB+ compensation, see EmbeddingReport].
+		 * If they were not collected while embedding, the images are compared now [one pass]; the LSB+ compensation
+		 * changes and failed_to_hide skips are then 0 because they can not be told apart from the other changes.
+		 */
+		if (report == null){
+			EmbeddingReport compared = EmbeddingReport.of(stego);
+			compared.compare(cover, stego);
+			compared.embeddedBits = embeddedBits;
+			report = compared;
+		}
+		return report;
+	}
+
+	public long[] changedSamples() {
+		// Number of changed samples of each channel, indexed like PixelPlanes [GRAY, or BLUE, GREEN and RED]
+		return report().changedSamples.clone();
+	}
+
+	public ChangeMap changeMap() {
+		// The changed samples [see ChangeMap], or null if the change map was not collected
+		return cover == null ? report.changeMap() : null;
+	}
+
+	public long totalChangedSamples() {
+		return report().totalChangedSamples();
+	}
+
+	@Override
+	public String toString() {
+		return method + ": " + embeddedBits + " of " + messageLength + " bits embedded, " + totalChangedSamples() + " samples changed";
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+
+public class Histograms {
+	/*
+	 * Histogram [256 bins] of every channel of an image, indexed by the channel like PixelPlanes [GRAY, or BLUE, GREEN and RED].
+	 *
+	 * All channels are counted in one pass over the samples [see PixelPlanes]. The image is split in bands of
+	 * CreateStego.BAND_ROWS rows; with Parallel the bands are counted by all cores and their counts are added.
+	 * When samples are changed [like the embedding process of a stego image], the histograms can be updated for each
+	 * change [see change and set] instead of counting the image again.
+	 *
+	 * The histograms of the bitmap files are cached [see read]: a cover image which is used for many stego images
+	 * [LSB+ and LSB++, histogram attacks] is counted only one time while the file is not changed.
+	 *
+	 * Example:
+	 * 		Histograms histograms = Histograms.read(new File("test.bmp"));
+	 * 		int[] red_hist = histograms.channel(PixelPlanes.RED);
+	 */
+
+	public final int channels;
+	private final int[][] hist;
+
+	Histograms(int[][] hist) {
+		this.channels = hist.length;
+		this.hist = hist;
+	}
+
+	public static Histograms of(PixelPlanes planes, boolean Parallel) {
+		/*
+		 * Params:
+		 * 		1- planes: the image
+		 * 		2- Parallel: true: the bands are counted by all cores
+		 */
+		int channels = planes.channels;
+		int row_samples = planes.width*channels;
+		byte[] samples = planes.samples;
+
+		// counts[(channel << 8) | value] is the number of samples of the channel with this value
+		int bands = (planes.height + CreateStego.BAND_ROWS - 1) / CreateStego.BAND_ROWS;
+		IntStream band_stream = IntStream.range(0, bands);
+		if (Parallel)
+			band_stream = band_stream.parallel();
+		int[] counts = band_stream.collect(() -> new int[channels << 8],
+				(count, band) -> {
+					int start = band*CreateStego.BAND_ROWS*row_samples;
+					int end = Math.min(planes.height, (band + 1)*CreateStego.BAND_ROWS)*row_samples;
+					countBlock(samples, start, end, channels, count);
+				},
+				(count, other) -> {
+					for (int i = 0; i < count.length; i++)
+						count[i] += other[i];
+				});
+
+		int[][] hist = new int[channels][256];
+		for (int channel = 0; channel < channels; channel++)
+			System.arraycopy(counts, channel << 8, hist[channel], 0, 256);
+		return new Histograms(hist);
+	}
+
+	private static void countBlock(byte[] samples, int start, int end, int channels, int[] count) {
+		// Adds the samples [start, end) to count [all channels of a pixel in one step]
+		if (channels == 1){
+			for (int position = start; position < end; position++)
+				count[samples[position] & 0xFF] +=1;
+			return;
+		}
+		for (int position = start; position < end; position += 3){
+			count[(PixelPlanes.BLUE << 8) | (samples[position + PixelPlanes.BLUE] & 0xFF)] +=1;
+			count[(PixelPlanes.GREEN << 8) | (samples[position + PixelPlanes.GREEN] & 0xFF)] +=1;
+			count[(PixelPlanes.RED << 8) | (samples[position + PixelPlanes.RED] & 0xFF)] +=1;
+		}
+	}
+
+	public static Histograms read(File file) throws IOException {
+		/*
+		 * Params:
+		 * 		1- file: bitmap image like /User/kazemmit/Documents/test.bmp
+		 * Returns the histograms of the image from the cache, or decodes and counts the image [on all cores] and adds them
+		 * to the cache. The returned histograms are a copy, so they can be changed.
+		 */
+		Source source = Source.of(file);
+		Histograms cached = cached(source);
+		if (cached != null)
+			return cached;
+		return of(source, PixelPlanes.read(file), true);
+	}
+
+	public int[] channel(int channel) {
+		// A copy of the histogram of the channel
+		return hist[channel].clone();
+	}
+
+	public int count(int channel, int value) {
+		return hist[channel][value];
+	}
+
+	public int[][] toArray() {
+		// A copy of the histograms, indexed by the channel [like CoverImage.histograms]
+		int[][] copy = new int[channels][];
+		for (int channel = 0; channel < channels; channel++)
+			copy[channel] = hist[channel].clone();
+		return copy;
+	}
+
+	public Histograms copy() {
+		return new Histograms(toArray());
+	}
+
+	public void change(int channel, int old_value, int new_value) {
+		// One sample of the channel was changed from old_value to new_value
+		hist[channel][old_value] -=1;
+		hist[channel][new_value] +=1;
+	}
+
+	public void set(PixelPlanes planes, int pixel, int channel, int value) {
+		// Changes one sample of planes [like PixelPlanes.set] and updates the histogram of its channel
+		change(channel, planes.get(pixel, channel), value);
+		planes.set(pixel, channel, value);
+	}
+
+	/*
+	 * Cache of the histograms of the bitmap files, keyed by the path of the file. An entry is used only while the
+	 * modification time and the size of the file are the same as when it was counted; the least recently used entries
+	 * are removed when there are more than CACHE_SIZE files [about 3 KB per color image].
+	 */
+	private static final int CACHE_SIZE = 4096;
+	private static final Map<String, Entry> CACHE = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private static final class Entry {
+		final Source source;
+		final Histograms histograms;
+
+		Entry(Source source, Histograms histograms) {
+			this.source = source;
+			this.histograms = histograms;
+		}
+	}
+
+	static final class Source {
+		/*
+		 * Path, modification time and size of a bitmap file. It should be taken before the file is decoded: if the file
+		 * is changed after that, the next Source of the file is different and the cached histograms are not used.
+		 */
+		final String path;
+		final long modified;
+		final long size;
+
+		private Source(String path, long modified, long size) {
+			this.path = path;
+			this.modified = modified;
+			this.size = size;
+		}
+
+		static Source of(File file) throws IOException {
+			BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			return new Source(file.getCanonicalPath(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), attributes.size());
+		}
+
+		boolean sameFile(Source other) {
+			return path.equals(other.path) && modified == other.modified && size == other.size;
+		}
+	}
+
+	static Histograms cached(Source source) {
+		// A copy of the cached histograms of the file, or null
+		Entry entry;
+		synchronized (CACHE){
+			entry = CACHE.get(source.path);
+		}
+		if (entry == null || !entry.source.sameFile(source))
+			return null;
+		return entry.histograms.copy();
+	}
+
+	static Histograms of(Source source, PixelPlanes planes, boolean Parallel) {
+		// Histograms of planes [decoded from the file of source], from the cache or counted and added to the cache
+		Histograms cached = cached(source);
+		if (cached != null)
+			return cached;
+		Histograms histograms = of(planes, Parallel);
+		store(source, histograms);
+		return histograms.copy();
+	}
+
+	static void store(Source source, Histograms histograms) {
+		// The cache keeps its own copy
+		Entry entry = new Entry(source, histograms.copy());
+		synchronized (CACHE){
+			CACHE.put(source.path, entry);
+		}
+	}
+
+	public static void clearCache() {
+		synchronized (CACHE){
+			CACHE.clear();
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.util.random.RandomGenerator;
+
+
+abstract class LSBKernel {
+	/*
+	 * SIMD kernel of the LSB method [see VectorLSBKernel].
+	 *
+	 * The LSB change (v/2)*2 + bit of one sample does not depend on the other samples, so a whole row is embedded at once:
+	 * the selection decisions and the message bits of the row are drawn first [the same random numbers in the same order
+	 * as the scalar loop of ScanEmbedder.Samples], then the samples are changed with vector operations. The stego image is
+	 * the same as the scalar path for the same seed.
+	 *
+	 * The vector kernel uses the incubator module jdk.incubator.vector:
+	 * 		java --add-modules jdk.incubator.vector -jar createstego-1.0.jar LSB test.bmp 1000
+	 * Without the module [or with -Dcreatestego.vector=false] VECTOR is null and the scalar path is used.
+	 */
+
+	// The vector kernel, or null if it is not available [not final: the tests replace it, see test/SteganographyTest.java]
+	static LSBKernel VECTOR = load();
+
+	private final ThreadLocal<byte[][]> buffers = ThreadLocal.withInitial(() -> new byte[2][0]);
+
+	// Changes samples [start, start+length) where select is not 0: the least significant bit is set to bits
+	abstract void apply(byte[] samples, int start, byte[] select, byte[] bits, int length);
+
+	int embed(byte[] samples, int start, int length, float Probability, RandomGenerator rand) {
+		/*
+		 * Params:
+		 * 		1- samples: the samples
+		 * 		2- start, length: the samples [start, start+length) are visited in this order [one row]
+		 * 		3- Probability: embedding rate [bit per sample]
+		 * 		4- rand: random stream of the band
+		 * Returns the number of embedded message bits
+		 */
+		byte[][] buffer = buffers.get();
+		if (buffer[0].length < length){
+			buffer[0] = new byte[length];
+			buffer[1] = new byte[length];
+		}
+		byte[] select = buffer[0];
+		byte[] bits = buffer[1];
+		int embedded = 0;
+		for (int i = 0; i < length; i++){
+			float P_select   = rand.nextFloat();
+			if (P_select<=Probability){ //Simulating the embedding key
+				float P_change   = rand.nextFloat();
+				select[i] = 1;
+				// Simulating the encrypted message
+				bits[i] = (byte) (P_change <= 0.5 ? 0 : 1);
+				embedded++;
+			}
+			else
+				select[i] = 0;
+		}
+		apply(samples, start, select, bits, length);
+		return embedded;
+	}
+
+	private static LSBKernel load() {
+		return (LSBKernel) loadVector("VectorLSBKernel");
+	}
+
+	static Object loadVector(String className) {
+		// A new instance of a Vector API kernel, or null if it is not available [also used by LSBMKernel]
+		if (!Boolean.parseBoolean(System.getProperty("createstego.vector", "true")))
+			return null;
+		try{
+			// The class can only be loaded if jdk.incubator.vector is in the module graph
+			return Class.forName(className).getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | LinkageError err)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.util.random.RandomGenerator;
+
+
+abstract class LSBMKernel {
+	/*
+	 * Row kernel of the LSB matching method.
+	 *
+	 * The random decisions of a row are drawn first [the same random numbers in the same order as CreateStego.LSBM_value]
+	 * into three streams:
+	 * 		select   : the sample is used for the message
+	 * 		flip     : the message bit is not the least significant bit of the sample, so the sample is changed by +-1
+	 * 		direction: 1: -1, 0: +1
+	 * then the samples are changed without any branch, with the boundary rule of LSBM: 0 -> 1 and 255 -> 254 [whatever
+	 * the direction is]. The stego image is the same as CreateStego.LSBM_value for the same seed.
+	 *
+	 * VECTOR is the Vector API kernel [see VectorLSBMKernel], or null if it is not available [see LSBKernel]. There is
+	 * no scalar form of the kernel: without vectors the drawing loop already branches on every sample, and the scalar
+	 * loop of ScanEmbedder.Samples is as fast as a branch-free change of the row.
+	 */
+
+	// Not final: the tests replace it [see test/SteganographyTest.java]
+	static LSBMKernel VECTOR = (LSBMKernel) LSBKernel.loadVector("VectorLSBMKernel");
+
+	private final ThreadLocal<byte[][]> buffers = ThreadLocal.withInitial(() -> new byte[3][0]);
+
+	// Changes samples [start, start+length) where select and flip are not 0 by +-1 [see the boundary rule above]
+	abstract void apply(byte[] samples, int start, byte[] select, byte[] flip, byte[] direction, int length);
+
+	int embed(byte[] samples, int start, int length, float Probability, RandomGenerator rand) {
+		/*
+		 * Params:
+		 * 		1- samples: the samples
+		 * 		2- start, length: the samples [start, start+length) are visited in this order [one row]
+		 * 		3- Probability: embedding rate [bit per sample]
+		 * 		4- rand: random stream of the band
+		 * Returns the number of embedded message bits
+		 */
+		byte[][] buffer = buffers.get();
+		if (buffer[0].length < length){
+			for (int i = 0; i < buffer.length; i++)
+				buffer[i] = new byte[length];
+		}
+		byte[] select = buffer[0];
+		byte[] flip = buffer[1];
+		byte[] direction = buffer[2];
+		int embedded = 0;
+		for (int i = 0; i < length; i++){
+			float P_select   = rand.nextFloat();
+			if (P_select<=Probability){//Simulating the embedding key
+				select[i] = 1;
+				embedded++;
+				float P_change   = rand.nextFloat();
+				if (P_change <= 0.5){//Simulating the encrypted message
+					flip[i] = 1;
+					float P_change_type   = rand.nextFloat();
+					direction[i] = (byte) (P_change_type <= 0.5 ? 1 : 0);
+				}
+				else
+					flip[i] = 0;
+			}
+			else
+				select[i] = 0;
+		}
+		apply(samples, start, select, flip, direction, length);
+		return embedded;
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+
+public class PayloadSweep {
+	/*
+	 * Sweep mode: several payloads of one cover image in one pass.
+	 *
+	 * One random visiting order of the positions of the embedding key is drawn for the cover image [see EmbeddingKey.order],
+	 * and the message bits are embedded in this order. Each payload is a prefix of the order: when the number of embedded
+	 * positions reaches the message length of a payload, the current image is its stego image. So:
+	 * 		- the image is visited only one time for all payloads [instead of one full embedding per payload]
+	 * 		- the changes of a smaller payload are exactly the first changes of every larger payload [nested change sets]
+	 * 		- every payload embeds exactly its message length [like the exact length mode]
+	 *
+	 * Only methods which change the selected samples independently can be swept [see ScanEmbedder: LSB, LSBM, LSBMR];
+	 * LSB+ and LSB++ compensate the histogram for the whole message, so a prefix of their changes is not a stego image.
+	 * The stego images are not the same as the single embedding with the same seed [the positions are visited in
+	 * the random order instead of the storage order].
+	 *
+	 * Example:
+	 * 		List<EmbeddingResult> results = PayloadSweep.embed("LSBM", cover, new int[] {1000, 5000, 10000}, new SplittableRandom(1234));
+	 */
+
+	interface Output {
+		// Called when the stego image of the payload MessageLengths[index] is ready [stego and report are changed after the call]
+		void write(int index, PixelPlanes stego, EmbeddingReport report) throws IOException;
+	}
+
+	public static List<EmbeddingResult> embed(String MethodName, PixelPlanes cover, int[] MessageLengths, RandomGenerator rand) {
+		/*
+		 * Params:
+		 * 		1- MethodName: LSB, LSBM, LSBMR or a registered scan embedder [see ScanEmbedder]
+		 * 		2- cover: the cover image; it is not changed
+		 * 		3- MessageLengths: message length of each payload in bit like {1000, 5000, 10000} [in any order]
+		 * 		4- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		 * Returns the stego image and the statistics of each payload, in the order of MessageLengths.
+		 */
+		ScanEmbedder embedder = scanEmbedder(MethodName);
+		EmbeddingResult[] results = new EmbeddingResult[MessageLengths.length];
+		try{
+			sweep(embedder, cover.copy(), MessageLengths, rand, (index, stego, report) ->
+				results[index] = new EmbeddingResult(stego.copy(), embedder.name(), MessageLengths[index], report.copy()));
+		}
+		catch (IOException err)
+		{
+			// Not possible: the output only copies the image
+			throw new UncheckedIOException(err);
+		}
+		return Arrays.asList(results);
+	}
+
+	public static List<File> embed(String MethodName, File cover, String[] Payloads, RandomGenerator rand, File OutputDirectory, boolean Patch) throws IOException {
+		/*
+		 * Params:
+		 * 		1- MethodName: LSB, LSBM, LSBMR or a registered scan embedder [see ScanEmbedder]
+		 * 		2- cover: input bitmap image like /User/kazemmit/Documents/test.bmp
+		 * 		3- Payloads: message lengths in bit like {"1000"} or embedding rates in bit per pixel like {"0.1bpp", "0.4bpp"}
+		 * 		4- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		 * 		5- OutputDirectory: directory of the stego images, or null to store them next to the cover
+		 * 		6- Patch: copy the cover file and write only the changed bytes [see BmpCodec.patch]
+		 * The stego images are stored like the batch mode [see BatchRunner]: <cover file name>.<payload>.<method>.bmp
+		 * Returns the stego image files, in the order of Payloads.
+		 */
+		ScanEmbedder embedder = scanEmbedder(MethodName);
+		PixelPlanes stego = PixelPlanes.read(cover);
+		File[] outputfiles = new File[Payloads.length];
+		sweep(embedder, stego, messageLengths(Payloads, stego), rand, (index, planes, report) -> {
+			outputfiles[index] = BatchRunner.outputFile(cover, cover.getName(), embedder.name(), Payloads[index].trim(), OutputDirectory);
+			if (Patch)
+				planes.writePatched(outputfiles[index]);
+			else
+				planes.write(outputfiles[index]);
+		});
+		return Arrays.asList(outputfiles);
+	}
+
+	static void sweep(ScanEmbedder embedder, PixelPlanes stego, int[] MessageLengths, RandomGenerator rand, Output output) throws IOException {
+		/*
+		 * Params:
+		 * 		1- embedder: the method
+		 * 		2- stego: a copy of the cover image; it is changed in place [after the call it is the stego image of the largest payload]
+		 * 		3- MessageLengths: message length of each payload in bit
+		 * 		4- rand: source of the random numbers
+		 * 		5- output: gets the stego image and the report of each payload, from the smallest to the largest payload
+		 * 		    [the report of a payload is collected while its prefix is embedded, see EmbeddingReport]
+		 */
+		Integer[] payloads = new Integer[MessageLengths.length];
+		int max_count = 0;
+		for (int i = 0; i < payloads.length; i++){
+			if (MessageLengths[i] < 0)
+				throw new IllegalArgumentException("Message length should not be negative: " + MessageLengths[i]);
+			payloads[i] = i;
+			max_count = Math.max(max_count, embedder.keyCount(MessageLengths[i]));
+		}
+		Arrays.sort(payloads, (a, b) -> Integer.compare(MessageLengths[a], MessageLengths[b]));
+
+		// One visiting order for all payloads, long enough for the largest one
+		int[] order = EmbeddingKey.order(embedder.exactPositions(stego.width, stego.height, stego.channels), max_count, rand);
+
+		byte[] samples = stego.samples;
+		EmbeddingReport report = EmbeddingReport.of(stego);
+		int visited = 0;
+		for (int index : payloads){
+			int count = Math.min(embedder.keyCount(MessageLengths[index]), order.length);
+			for (; visited < count; visited++)
+				report.embeddedBits += embedder.embedUnit(samples, order[visited], stego.width, stego.channels, rand, report);
+			output.write(index, stego, report);
+		}
+	}
+
+	static ScanEmbedder scanEmbedder(String MethodName) {
+		Embedder embedder = Embedders.require(MethodName);
+		if (!(embedder instanceof ScanEmbedder))
+			throw new IllegalArgumentException("The sweep mode needs a method which changes the selected samples independently [like LSB, LSBM or LSBMR]: " + embedder.name());
+		return (ScanEmbedder) embedder;
+	}
+
+	static int[] messageLengths(String[] Payloads, PixelPlanes cover) {
+		int[] MessageLengths = new int[Payloads.length];
+		for (int i = 0; i < Payloads.length; i++)
+			MessageLengths[i] = BatchRunner.messageLength(Payloads[i], cover.width, cover.height);
+		return MessageLengths;
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.io.*;
+import java.awt.image.*;
+import javax.imageio.*;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.util.stream.IntStream;
+
+
+public class PixelPlanes {
+	/*
+	 * Shared pixel access layer used by all embedders of CreateStego.
+	 *
+	 * Instead of calling image.getRGB / new Color / image.setRGB for every pixel, the embedders work directly on the
+	 * byte array that backs the raster of the decoded image. The samples are stored pixel by pixel [interleaved]:
+	 * 		gray scale image: one byte per pixel  [gray]
+	 * 		color image     : three bytes per pixel [blue, green, red] exactly like the bitmap file layout
+	 *
+	 * Linear pixel index of pixel (x, y) is y*width + x, and the sample of a channel is stored at pixel*channels + channel.
+	 * Since the byte array is shared with the BufferedImage, every change made by an embedder is already in the image
+	 * that will be written as the stego image [no conversion is needed].
+	 *
+	 * Bitmap files are read and written by BmpCodec [memory mapped, without ImageIO]; ImageIO is only used for the
+	 * bitmap formats that BmpCodec does not handle.
+	 */
+
+	// Position of each channel inside one pixel [for color images]
+	public static final int BLUE = 0;
+	public static final int GREEN = 1;
+	public static final int RED = 2;
+	// Position of the gray value inside one pixel [for gray scale images]
+	public static final int GRAY = 0;
+
+	public final BufferedImage image;
+	public final byte[] samples;
+	public final int width;
+	public final int height;
+	public final int channels;
+	public final boolean isGrayscale;
+	// Headers and palette of the bitmap file that was read by BmpCodec [null otherwise]; the stego image gets the same header
+	final byte[] header;
+	// The bitmap file that was read by BmpCodec [null otherwise], used by writePatched
+	final File source;
+
+	private PixelPlanes(BufferedImage image, boolean isGrayscale, byte[] header, File source) {
+		this.image = image;
+		this.header = header;
+		this.source = source;
+		this.samples = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		this.isGrayscale = isGrayscale;
+		this.channels = isGrayscale ? 1 : 3;
+	}
+
+	static PixelPlanes of(BufferedImage image, boolean isGrayscale, byte[] header, File source) {
+		// image should be a TYPE_BYTE_GRAY [isGrayscale] or TYPE_3BYTE_BGR image
+		return new PixelPlanes(image, isGrayscale, header, source);
+	}
+
+	public static PixelPlanes read(File file) throws IOException {
+		/*
+		 * Params:
+		 * 		1- file: input bitmap image like /User/kazemmit/Documents/test.bmp
+		 * Decodes the image and exposes its samples as a byte array.
+		 */
+		PixelPlanes planes = BmpCodec.read(file);
+		if (planes != null)
+			return planes;
+		BufferedImage image = ImageIO.read(file);
+		if (image == null)
+			throw new IOException("Unsupported image file: " + file);
+		return wrap(image);
+	}
+
+	public static PixelPlanes wrap(BufferedImage image) {
+		/*
+		 * Params:
+		 * 		1- image: a decoded image
+		 * If the raster of the image is already a packed 8 bit gray or BGR byte array [which is the case for 8 bit and
+		 * 24 bit bitmap files], the image is used as is and the embedders will change it in place.
+		 * Otherwise the image is converted once to an 8 bit gray [for gray scale images] or a 24 bit BGR image.
+		 */
+		if (isPackedBytes(image, 1) && (isGrayColorSpace(image) || isGrayPalette(image)))
+			return new PixelPlanes(image, true, null, null);
+		if (isPackedBytes(image, 3) && !(image.getColorModel() instanceof IndexColorModel)
+				&& image.getColorModel().getColorSpace().isCS_sRGB()) {
+			int[] offsets = ((ComponentSampleModel) image.getSampleModel()).getBandOffsets();
+			if (offsets[0] == RED && offsets[1] == GREEN && offsets[2] == BLUE)
+				return new PixelPlanes(image, false, null, null);
+		}
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		if (isGrayColorSpace(image)) {
+			// Gray scale image with more than 8 bits per sample: keep the most significant 8 bits
+			BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+			int shift = Math.max(0, image.getSampleModel().getSampleSize(0) - 8);
+			int[] row = new int[width];
+			for (int yPixel = 0; yPixel < height; yPixel++) {
+				image.getRaster().getSamples(0, yPixel, width, 1, 0, row);
+				for (int xPixel = 0; xPixel < width; xPixel++)
+					row[xPixel] >>= shift;
+				gray.getRaster().setSamples(0, yPixel, width, 1, 0, row);
+			}
+			return new PixelPlanes(gray, true, null, null);
+		}
+		BufferedImage color = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		int[] row = new int[width];
+		for (int yPixel = 0; yPixel < height; yPixel++) {
+			image.getRGB(0, yPixel, width, 1, row, 0, width);
+			color.setRGB(0, yPixel, width, 1, row, 0, width);
+		}
+		return new PixelPlanes(color, false, null, null);
+	}
+
+	public static PixelPlanes wrap(byte[] samples, int width, int height, boolean isGrayscale) {
+		/*
+		 * Params:
+		 * 		1- samples: samples of the image, row by row from the top [gray: one byte per pixel, color: blue, green, red]
+		 * 		2, 3- width and height of the image
+		 * 		4- isGrayscale: true: one channel, false: three channels
+		 * The array is used as is [not copied], like the byte array of a TYPE_BYTE_GRAY or TYPE_3BYTE_BGR image.
+		 */
+		int channels = isGrayscale ? 1 : 3;
+		if (width <= 0 || height <= 0 || samples.length != (long) width*height*channels)
+			throw new IllegalArgumentException("The image should have width*height*" + channels + " samples: " + samples.length);
+		DataBufferByte buffer = new DataBufferByte(samples, samples.length);
+		ColorModel color_model;
+		WritableRaster raster;
+		if (isGrayscale){
+			color_model = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), new int[] {8}, false, true,
+					Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+			raster = Raster.createInterleavedRaster(buffer, width, height, width, 1, new int[] {GRAY}, null);
+		}
+		else{
+			color_model = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), new int[] {8, 8, 8}, false, false,
+					Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+			raster = Raster.createInterleavedRaster(buffer, width, height, width*3, 3, new int[] {RED, GREEN, BLUE}, null);
+		}
+		return new PixelPlanes(new BufferedImage(color_model, raster, false, null), isGrayscale, null, null);
+	}
+
+	public PixelPlanes copy() {
+		// A new image with the same format and a copy of the samples [one array copy, no conversion]
+		WritableRaster raster = image.getRaster().createCompatibleWritableRaster();
+		System.arraycopy(samples, 0, ((DataBufferByte) raster.getDataBuffer()).getData(), 0, samples.length);
+		return new PixelPlanes(new BufferedImage(image.getColorModel(), raster, false, null), isGrayscale, header, source);
+	}
+
+	public int get(int pixel, int channel) {
+		return samples[pixel*channels + channel] & 0xFF;
+	}
+
+	public void set(int pixel, int channel, int value) {
+		samples[pixel*channels + channel] = (byte) value;
+	}
+
+	public int[] histogram(int channel, boolean Parallel) {
+		/*
+		 * Params:
+		 * 		1- channel: GRAY for gray scale images, or RED, GREEN or BLUE for color images
+		 * 		2- Parallel: true: the rows are counted by all cores [each thread counts in its own int[256], then they are added]
+		 * Returns the histogram [256 bins] of the channel.
+		 */
+		IntStream rows = IntStream.range(0, height);
+		if (Parallel)
+			rows = rows.parallel();
+		return rows.collect(() -> new int[256],
+				(hist, yPixel) -> {
+					int end = (yPixel + 1)*width*channels;
+					for (int position = yPixel*width*channels + channel; position < end; position += channels)
+						hist[samples[position] & 0xFF] +=1;
+				},
+				(hist, other) -> {
+					for (int i = 0; i < 256; i++)
+						hist[i] += other[i];
+				});
+	}
+
+	public void write(File file) throws IOException {
+		BmpCodec.write(this, file);
+	}
+
+	public void writePatched(File file) throws IOException {
+		/*
+		 * Params:
+		 * 		1- file: output bitmap image
+		 * Stores the image like write, but the bitmap file of the cover image is copied and only the changed bytes are
+		 * written [see BmpCodec.patch]. If the samples were not read by BmpCodec, the image is written by write.
+		 */
+		if (source != null && header != null)
+			BmpCodec.patch(this, file);
+		else
+			write(file);
+	}
+
+	private static boolean isPackedBytes(BufferedImage image, int bands) {
+		// The samples should be one byte array, pixel interleaved, without any padding between the rows
+		WritableRaster raster = image.getRaster();
+		if (!(raster.getDataBuffer() instanceof DataBufferByte) || raster.getDataBuffer().getNumBanks() != 1)
+			return false;
+		if (raster.getDataBuffer().getOffset() != 0 || raster.getParent() != null)
+			return false;
+		if (!(raster.getSampleModel() instanceof PixelInterleavedSampleModel) || raster.getNumBands() != bands)
+			return false;
+		PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) raster.getSampleModel();
+		return sm.getPixelStride() == bands && sm.getScanlineStride() == image.getWidth()*bands
+				&& sm.getSampleSize(0) == 8;
+	}
+
+	private static boolean isGrayColorSpace(BufferedImage image) {
+		return !(image.getColorModel() instanceof IndexColorModel)
+				&& image.getColorModel().getColorSpace().getType() == ColorSpace.TYPE_GRAY;
+	}
+
+	private static boolean isGrayPalette(BufferedImage image) {
+		// 8 bit bitmap files with a gray palette [palette entry i is (i, i, i)]: the index is the gray value itself
+		if (!(image.getColorModel() instanceof IndexColorModel))
+			return false;
+		IndexColorModel icm = (IndexColorModel) image.getColorModel();
+		if (icm.getMapSize() != 256 || icm.hasAlpha())
+			return false;
+		for (int i = 0; i < 256; i++) {
+			if (icm.getRed(i) != i || icm.getGreen(i) != i || icm.getBlue(i) != i)
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.util.BitSet;
+import java.util.random.RandomGenerator;
+
+
+public abstract class ScanEmbedder implements Embedder {
+	/*
+	 * Shared scan driver of the embedding methods which only change the selected samples [or pairs of samples].
+	 *
+	 * The driver does everything except the embedding of one sample or one pair: the embedding rate, the embedding key of
+	 * the exact length mode [see EmbeddingKey], the bands and their random streams [see CreateStego.forEachBand] and the
+	 * traversal of each row. StreamingStego uses the same rows, so every scan embedder also has a streaming mode.
+	 *
+	 * A new method extends one of:
+	 * 		Samples: each message bit is embedded in one sample [like LSB and LSBM]
+	 * 		Pairs  : two message bits are embedded in the pixels (2k, 2k+1) of a row, for each channel [like LSBMR]
+	 * and is added to Embedders [see Embedders for ServiceLoader].
+	 */
+
+	private final String name;
+	private final String description;
+
+	ScanEmbedder(String name, String description) {
+		this.name = name.trim().toUpperCase();
+		this.description = description;
+	}
+
+	@Override
+	public String name() {
+		return name;
+	}
+
+	@Override
+	public String description() {
+		return description;
+	}
+
+	// Number of positions of the embedding key of the exact length mode
+	abstract long keyPositions(int width, int height, int channels);
+
+	// Number of selected positions for a message of MessageLength bits
+	abstract int keyCount(int MessageLength);
+
+	abstract int embedRow(byte[] samples, int row_start, int yPixel, int width, int channels, float Probability, BitSet key, RandomGenerator rand, EmbeddingReport report);
+	/*
+	 * Params:
+	 * 		1- samples: the samples [a whole image, or one strip of it, see StreamingStego]
+	 * 		2- row_start: position of the first sample of the row in samples
+	 * 		3- yPixel: row number in the whole image [used by the embedding key]
+	 * 		4- width, channels: of the image
+	 * 		5- Probability: embedding rate [bit per sample]
+	 * 		6- key: selected positions in exact length mode, or null to select each position with Probability
+	 * 		7- rand: random stream of the band
+	 * 		8- report: every change is added to report [or null, see EmbeddingReport]
+	 * Embedding process of one row; returns the number of embedded message bits
+	 */
+
+	// Embedding process of one position of the embedding key [see PayloadSweep]; returns the number of embedded message bits
+	abstract int embedUnit(byte[] samples, int unit, int width, int channels, RandomGenerator rand, EmbeddingReport report);
+
+	@Override
+	public long embed(PixelPlanes planes, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, int[][] cover_histograms) {
+		return embed(planes, MessageLength, rand, ExactLength, Parallel, cover_histograms, null);
+	}
+
+	@Override
+	public long embed(PixelPlanes planes, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, int[][] cover_histograms, EmbeddingReport report) {
+		byte[] samples = planes.samples;
+		int width = planes.width;
+		int channels = planes.channels;
+		int row_samples = width*channels;
+
+		// Calculating the embedding rate [bit per sample]
+		// [for color images, each channel of a pixel is selected independently]
+		float Probability = (float)MessageLength / samples.length;
+
+		// Exact length mode: exactly keyCount positions are selected as the embedding key
+		BitSet selected = null;
+		if (ExactLength)
+			selected = key(width, planes.height, channels, MessageLength, rand);
+		BitSet key = selected;
+
+		long embedded_bits = CreateStego.forEachBand(planes.height, rand, Parallel, (first_row, last_row, band_rand) -> {
+			// Each band collects its own report
+			EmbeddingReport band_report = report == null ? null : report.part();
+			long embedded = 0;
+			for (int yPixel = first_row; yPixel < last_row; yPixel++)
+				embedded += embedRow(samples, yPixel*row_samples, yPixel, width, channels, Probability, key, band_rand, band_report);
+			if (report != null)
+				report.add(band_report);
+			return embedded;
+		});
+		if (report != null)
+			report.embeddedBits += embedded_bits;
+		return embedded_bits;
+	}
+
+	BitSet key(int width, int height, int channels, int MessageLength, RandomGenerator rand) {
+		return EmbeddingKey.select(exactPositions(width, height, channels), keyCount(MessageLength), rand);
+	}
+
+	int exactPositions(int width, int height, int channels) {
+		// The embedding key [see EmbeddingKey] is a BitSet, which is indexed by int
+		long positions = keyPositions(width, height, channels);
+		if (positions > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("The exact length mode supports up to " + Integer.MAX_VALUE + " positions");
+		return (int) positions;
+	}
+
+	public abstract static class Samples extends ScanEmbedder {
+		// Embedding methods which embed one message bit in one selected sample
+
+		protected Samples(String name, String description) {
+			super(name, description);
+		}
+
+		// Embedding of one message bit in one sample; returns the stego value [0..255] of the sample
+		protected abstract int embedSample(int value, RandomGenerator rand);
+
+		@Override
+		final long keyPositions(int width, int height, int channels) {
+			return (long) width*height*channels;
+		}
+
+		@Override
+		final int keyCount(int MessageLength) {
+			return MessageLength;
+		}
+
+		@Override
+		final int embedUnit(byte[] samples, int unit, int width, int channels, RandomGenerator rand, EmbeddingReport report) {
+			int cover = samples[unit] & 0xFF;
+			int stego = embedSample(cover, rand);
+			samples[unit] = (byte)stego;
+			if (report != null)
+				report.change(unit, cover, stego);
+			return 1;
+		}
+
+		@Override
+		int embedRow(byte[] samples, int row_start, int yPixel, int width, int channels, float Probability, BitSet key, RandomGenerator rand, EmbeddingReport report) {
+			int row_samples = width*channels;
+			int end = row_start + row_samples;
+			int embedded = 0;
+			// Index of the samples of the row in the whole image [samples can be one strip of the image]
+			int offset = yPixel*row_samples - row_start;
+			if (key != null){
+				int first_position = yPixel*row_samples;
+				int last_position = first_position + row_samples;
+				for (int position = key.nextSetBit(first_position); position >= 0 && position < last_position; position = key.nextSetBit(position+1)){
+					int index = row_start + (position - first_position);
+					int cover = samples[index] & 0xFF;
+					int stego = embedSample(cover, rand);
+					samples[index] = (byte)stego;
+					if (report != null)
+						report.change(index + offset, cover, stego);
+					embedded++;
+				}
+			}
+			else{
+				for (int position = row_start; position < end; position++){
+					float P_select   = rand.nextFloat();
+					if (P_select<=Probability){ //Simulating the embedding key
+						int cover = samples[position] & 0xFF;
+						int stego = embedSample(cover, rand);
+						samples[position] = (byte)stego;
+						if (report != null)
+							report.change(position + offset, cover, stego);
+						embedded++;
+					}
+				}
+			}
+			return embedded;
+		}
+	}
+
+	public abstract static class Pairs extends ScanEmbedder {
+		// Embedding methods which embed two message bits in the pixels (2k, 2k+1) of a row [each channel is one pair]
+
+		protected Pairs(String name, String description) {
+			super(name, description);
+		}
+
+		// Embedding of two message bits in the samples at position_1 and position_2 [they are changed in place]
+		protected abstract void embedPair(byte[] samples, int position_1, int position_2, RandomGenerator rand);
+
+		@Override
+		final long keyPositions(int width, int height, int channels) {
+			// unit = pair*channels + channel, where pair = y*(width/2) + k
+			return (long) (width/2)*height*channels;
+		}
+
+		@Override
+		final int keyCount(int MessageLength) {
+			// Each selected pair carries two message bits
+			return (MessageLength+1)/2;
+		}
+
+		@Override
+		final int embedUnit(byte[] samples, int unit, int width, int channels, RandomGenerator rand, EmbeddingReport report) {
+			int pairs_per_row = width/2;
+			int pair = unit / channels;
+			int position_1 = (pair / pairs_per_row)*width*channels + (pair % pairs_per_row)*2*channels + unit % channels;
+			embedPair(samples, position_1, position_1 + channels, rand, 0, report);
+			return 2;
+		}
+
+		@Override
+		final int embedRow(byte[] samples, int row_start, int yPixel, int width, int channels, float Probability, BitSet key, RandomGenerator rand, EmbeddingReport report) {
+			int pairs_per_row = width/2;
+			int embedded = 0;
+			// Index of the samples of the row in the whole image [samples can be one strip of the image]
+			int offset = yPixel*width*channels - row_start;
+			if (key != null){
+				int first_unit = yPixel*pairs_per_row*channels;
+				int end = first_unit + pairs_per_row*channels;
+				for (int unit = key.nextSetBit(first_unit); unit >= 0 && unit < end; unit = key.nextSetBit(unit+1))
+				{
+					int position_1 = row_start + ((unit - first_unit) / channels)*2*channels + unit % channels;
+					embedPair(samples, position_1, position_1 + channels, rand, offset, report);
+					embedded += 2;
+				}
+			}
+			else{
+				for (int xPixel = 0; xPixel < pairs_per_row; xPixel++)
+				{
+					// Position of the pixels xi and xj in the byte array
+					int base_1 = row_start + xPixel*2*channels;
+					for (int channel = 0; channel < channels; channel++){
+						float P_select   = rand.nextFloat();
+						if (P_select<=Probability){//Simulating the embedding key
+							embedPair(samples, base_1 + channel, base_1 + channels + channel, rand, offset, report);
+							embedded += 2;
+						}
+					}
+				}
+			}
+			return embedded;
+		}
+
+		private void embedPair(byte[] samples, int position_1, int position_2, RandomGenerator rand, int offset, EmbeddingReport report) {
+			// offset: index of samples[0] in the whole image
+			if (report == null){
+				embedPair(samples, position_1, position_2, rand);
+				return;
+			}
+			int cover_1 = samples[position_1] & 0xFF;
+			int cover_2 = samples[position_2] & 0xFF;
+			embedPair(samples, position_1, position_2, rand);
+			report.change(position_1 + offset, cover_1, samples[position_1] & 0xFF);
+			report.change(position_2 + offset, cover_2, samples[position_2] & 0xFF);
+		}
+	}
+}
@@ -0,0 +1,334 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+
+public class Steganalysis {
+	/*
+	 * Classic detectors of LSB embedding, to check the stego images without exporting them to another tool:
+	 * 		chi-square attack [Westfeld and Pfitzmann]: probability of embedding, from the pairs of values (2k, 2k+1)
+	 * 		    of the histogram [the pairs which LSB+ and LSB++ balance]
+	 * 		RS analysis [Fridrich, Goljan and Du]: estimated embedding rate, from the regular and singular groups of
+	 * 		    four pixels of a row [mask 0 1 1 0] before and after flipping all LSBs
+	 * 		Sample Pairs Analysis [Dumitrescu, Wu and Wang]: estimated embedding rate, from the pairs of neighbour pixels
+	 * 		    of a row
+	 * The embedding rates are in bit per sample [about 2 * changed samples / samples for LSB]. Every channel is analysed
+	 * separately; all arrays are indexed by the channel like PixelPlanes [GRAY, or BLUE, GREEN and RED].
+	 *
+	 * The samples are read directly from the byte array of the image [see PixelPlanes]. The RS and SPA counts are
+	 * collected in one pass over bands of CreateStego.BAND_ROWS rows [with Parallel, by all cores], and the chi-square
+	 * attack uses the histograms of the image [see Histograms]. The result does not depend on Parallel.
+	 *
+	 * Example:
+	 * 		Steganalysis scores = Steganalysis.analyze(new File("test.bmp.LSB.bmp"), true);
+	 * 		System.out.println(scores.rs[PixelPlanes.RED]);
+	 */
+
+	// Chi-square attack: probability of embedding [0 to 1]
+	public final double[] chiSquare;
+	// RS analysis and Sample Pairs Analysis: estimated embedding rate [bit per sample]
+	public final double[] rs;
+	public final double[] spa;
+
+	private Steganalysis(double[] chiSquare, double[] rs, double[] spa) {
+		this.chiSquare = chiSquare;
+		this.rs = rs;
+		this.spa = spa;
+	}
+
+	public static Steganalysis analyze(File file, boolean Parallel) throws IOException {
+		// The histograms are counted, not taken from the cache of Histograms [it is for the cover images, a stego image is analysed only one time]
+		return analyze(PixelPlanes.read(file), Parallel);
+	}
+
+	public static Steganalysis analyze(PixelPlanes planes, boolean Parallel) {
+		/*
+		 * Params:
+		 * 		1- planes: the image [usually a stego image]
+		 * 		2- Parallel: true: the bands are analysed by all cores
+		 */
+		return analyze(planes, Histograms.of(planes, Parallel), Parallel);
+	}
+
+	private static Steganalysis analyze(PixelPlanes planes, Histograms histograms, boolean Parallel) {
+		int channels = planes.channels;
+		int width = planes.width;
+		byte[] samples = planes.samples;
+
+		// counts[channel*COUNTS + i]: the RS and SPA counts of the channel [see countRow]
+		int bands = (planes.height + CreateStego.BAND_ROWS - 1) / CreateStego.BAND_ROWS;
+		IntStream band_stream = IntStream.range(0, bands);
+		if (Parallel)
+			band_stream = band_stream.parallel();
+		long[] counts = band_stream.collect(() -> new long[channels*COUNTS],
+				(count, band) -> {
+					int last_row = Math.min(planes.height, (band + 1)*CreateStego.BAND_ROWS);
+					for (int yPixel = band*CreateStego.BAND_ROWS; yPixel < last_row; yPixel++){
+						for (int channel = 0; channel < channels; channel++)
+							countRow(samples, yPixel*width*channels + channel, width, channels, count, channel*COUNTS);
+					}
+				},
+				(count, other) -> {
+					for (int i = 0; i < count.length; i++)
+						count[i] += other[i];
+				});
+
+		double[] chi_square = new double[channels];
+		double[] rs = new double[channels];
+		double[] spa = new double[channels];
+		for (int channel = 0; channel < channels; channel++){
+			chi_square[channel] = chiSquare(histograms.channel(channel));
+			rs[channel] = rs(counts, channel*COUNTS);
+			spa[channel] = spa(counts, channel*COUNTS);
+		}
+		return new Steganalysis(chi_square, rs, spa);
+	}
+
+	// Counts of one channel: R_M, S_M, R_-M, S_-M of the image and of the image with all LSBs flipped, then X, Y, Z and W of SPA
+	private static final int COUNTS = 12;
+	private static final int FLIPPED = 4;
+	private static final int SPA_X = 8, SPA_Y = 9, SPA_Z = 10, SPA_W = 11;
+
+	private static void countRow(byte[] samples, int start, int width, int channels, long[] count, int offset) {
+		// Adds the counts of one row of a channel [samples start, start + channels, ... ] to count[offset ...]
+		int end = start + width*channels;
+
+		// Sample Pairs Analysis: every pair (u, v) of neighbour samples
+		// [no branch: (x - y) >>> 31 is 1 if x < y, and ((x ^ y) - 1) >>> 31 is 1 if x == y]
+		int x = 0, y = 0, z = 0, w = 0;
+		for (int position = start; position + channels < end; position += channels){
+			int u = samples[position] & 0xFF;
+			int v = samples[position + channels] & 0xFF;
+			int less = (u - v) >>> 31;
+			int greater = (v - u) >>> 31;
+			int odd = v & 1;
+			z += ((u ^ v) - 1) >>> 31;
+			// X: v even and u < v, or v odd and u > v; Y: v even and u > v, or v odd and u < v
+			x += (less & ~odd) | (greater & odd);
+			int in_y = (greater & ~odd) | (less & odd);
+			y += in_y;
+			// W: the pairs of Y whose values are the two values of one pair (2k, 2k+1)
+			w += in_y & ((((u >> 1) ^ (v >> 1)) - 1) >>> 31);
+		}
+		count[offset + SPA_X] += x;
+		count[offset + SPA_Y] += y;
+		count[offset + SPA_Z] += z;
+		count[offset + SPA_W] += w;
+
+		// RS analysis: groups of four neighbour samples, the mask flips the two middle samples; the groups are added to
+		// the counts of the band [count[offset ...]: R_M, S_M, R_-M, S_-M of the image, then of the image with all LSBs flipped]
+		for (int position = start; position + 3*channels < end; position += 4*channels){
+			int a = samples[position] & 0xFF;
+			int b = samples[position + channels] & 0xFF;
+			int c = samples[position + 2*channels] & 0xFF;
+			int d = samples[position + 3*channels] & 0xFF;
+			classify(a, b, c, d, count, offset);
+			classify(a ^ 1, b ^ 1, c ^ 1, d ^ 1, count, offset + FLIPPED);
+		}
+	}
+
+	private static void classify(int a, int b, int c, int d, long[] rs, int offset) {
+		// Regular [the flipping increases the smoothness f] or singular [decreases f] group, for the mask M and -M
+		int f = Math.abs(b - a) + Math.abs(c - b) + Math.abs(d - c);
+		// F1: 2k <-> 2k+1
+		int b1 = b ^ 1, c1 = c ^ 1;
+		int f1 = Math.abs(b1 - a) + Math.abs(c1 - b1) + Math.abs(d - c1);
+		// F-1: 2k-1 <-> 2k
+		int b2 = ((b + 1) ^ 1) - 1, c2 = ((c + 1) ^ 1) - 1;
+		int f2 = Math.abs(b2 - a) + Math.abs(c2 - b2) + Math.abs(d - c2);
+		// (x - y) >>> 31 is 1 if x < y [no branch, the groups of a noisy image are regular or singular at random]
+		rs[offset] += (f - f1) >>> 31;
+		rs[offset + 1] += (f1 - f) >>> 31;
+		rs[offset + 2] += (f - f2) >>> 31;
+		rs[offset + 3] += (f2 - f) >>> 31;
+	}
+
+	static double rs(long[] count, int offset) {
+		// Embedding rate from R_M - S_M and R_-M - S_-M of the image [p/2 flipped] and of the flipped image [1 - p/2]
+		double d0 = count[offset] - count[offset + 1];
+		double n0 = count[offset + 2] - count[offset + 3];
+		double d1 = count[offset + FLIPPED] - count[offset + FLIPPED + 1];
+		double n1 = count[offset + FLIPPED + 2] - count[offset + FLIPPED + 3];
+		double z = smallerRoot(2*(d1 + d0), n0 - n1 - d1 - 3*d0, d0 - n0);
+		return z / (z - 0.5);
+	}
+
+	static double spa(long[] count, int offset) {
+		// Embedding rate p is the smaller root of (W + Z)/2 p^2 + (2X - P) p + Y - X = 0 [P: number of pairs]
+		double x = count[offset + SPA_X];
+		double y = count[offset + SPA_Y];
+		double z = count[offset + SPA_Z];
+		double w = count[offset + SPA_W];
+		double pairs = x + y + z;
+		return smallerRoot((w + z) / 2, 2*x - pairs, y - x);
+	}
+
+	private static double smallerRoot(double a, double b, double c) {
+		// The root of a x^2 + b x + c = 0 with the smaller absolute value [-b / 2a if there is no real root]
+		if (a == 0)
+			return b == 0 ? 0 : -c / b;
+		double discriminant = b*b - 4*a*c;
+		if (discriminant < 0)
+			return -b / (2*a);
+		double root = Math.sqrt(discriminant);
+		double x1 = (-b + root) / (2*a);
+		double x2 = (-b - root) / (2*a);
+		return Math.abs(x1) < Math.abs(x2) ? x1 : x2;
+	}
+
+	public static double chiSquare(int[] hist) {
+		/*
+		 * Params:
+		 * 		1- hist: histogram [256 bins] of one channel
+		 * Returns the probability of embedding: 1 - CDF of the chi-square distribution at the statistic of the pairs
+		 * (2k, 2k+1) [LSB embedding makes the two values of each pair equally frequent]. Pairs with an expected count
+		 * smaller than 5 are not used.
+		 */
+		double statistic = 0;
+		int categories = 0;
+		for (int i = 0; i < 256; i += 2){
+			double expected = (hist[i] + hist[i + 1]) / 2.0;
+			if (expected < 5)
+				continue;
+			double diff = hist[i] - expected;
+			statistic += diff*diff / expected;
+			categories++;
+		}
+		if (categories < 2)
+			return 0;
+		return upperGamma((categories - 1) / 2.0, statistic / 2);
+	}
+
+	private static double upperGamma(double a, double x) {
+		// Regularized upper incomplete gamma function Q(a, x) [series for x < a + 1, continued fraction otherwise]
+		if (x <= 0)
+			return 1;
+		double log_prefix = a*Math.log(x) - x - logGamma(a);
+		if (x < a + 1){
+			double term = 1 / a;
+			double sum = term;
+			for (int n = 1; n < 1000 && Math.abs(term) > Math.abs(sum)*1e-15; n++){
+				term *= x / (a + n);
+				sum += term;
+			}
+			return Math.max(0, 1 - sum*Math.exp(log_prefix));
+		}
+		// Lentz's method
+		double tiny = 1e-300;
+		double b = x + 1 - a;
+		double c = 1 / tiny;
+		double d = 1 / b;
+		double h = d;
+		for (int n = 1; n < 1000; n++){
+			double an = -n*(n - a);
+			b += 2;
+			d = an*d + b;
+			if (Math.abs(d) < tiny)
+				d = tiny;
+			c = b + an / c;
+			if (Math.abs(c) < tiny)
+				c = tiny;
+			d = 1 / d;
+			double delta = d*c;
+			h *= delta;
+			if (Math.abs(delta - 1) < 1e-15)
+				break;
+		}
+		return Math.min(1, Math.exp(log_prefix)*h);
+	}
+
+	private static double logGamma(double x) {
+		// Lanczos approximation [g = 7, n = 9]
+		double[] coefficients = {0.99999999999980993, 676.5203681218851, -1259.1392167224028, 771.32342877765313,
+				-176.61502916214059, 12.507343278686905, -0.13857109526572012, 9.9843695780195716e-6, 1.5056327351493116e-7};
+		x -= 1;
+		double sum = coefficients[0];
+		for (int i = 1; i < coefficients.length; i++)
+			sum += coefficients[i] / (x + i);
+		double t = x + 7.5;
+		return 0.5*Math.log(2*Math.PI) + (x + 0.5)*Math.log(t) - t + Math.log(sum);
+	}
+
+	public static int run(File Images, int Threads, boolean Parallel) throws IOException {
+		/*
+		 * Params:
+		 * 		1- Images: a directory [all bitmap images of it, covers and stego images] or a manifest [text file with one
+		 * 		    image path per line, see BatchRunner]
+		 * 		2- Threads: number of worker threads [one image per thread]
+		 * 		3- Parallel: the bands of each image are also analysed by all cores
+		 * Batch mode: one status line is printed for every image when it is analysed:
+		 * 		OK      image chi-square RS SPA time[ms]   [one value per channel, separated by commas]
+		 * 		FAILED  image error time[ms]
+		 * Returns the number of failed images.
+		 */
+		List<File> files = BatchRunner.listImages(Images, false);
+		ExecutorService pool = Executors.newFixedThreadPool(Threads);
+		AtomicInteger failed = new AtomicInteger();
+		for (File file : files){
+			pool.execute(() -> {
+				if (!runImage(file, Parallel))
+					failed.incrementAndGet();
+			});
+		}
+		pool.shutdown();
+		try{
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		}
+		catch (InterruptedException err)
+		{
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		System.out.println("Analysed " + files.size() + " images, " + failed.get() + " failed");
+		return failed.get();
+	}
+
+	static boolean runImage(File file, boolean Parallel) {
+		long start = System.nanoTime();
+		try{
+			Steganalysis scores = analyze(file, Parallel);
+			report("OK", file, scores.toString(), start);
+			return true;
+		}
+		catch (Exception err)
+		{
+			report("FAILED", file, err.toString(), start);
+			return false;
+		}
+	}
+
+	private static synchronized void report(String status, File file, String result, long start) {
+		long time = (System.nanoTime() - start) / 1000000;
+		System.out.println(status + "\t" + file.getPath() + "\t" + result + "\t" + time + "ms");
+	}
+
+	@Override
+	public String toString() {
+		return "chi-square=" + format(chiSquare) + "\tRS=" + format(rs) + "\tSPA=" + format(spa);
+	}
+
+	private static String format(double[] values) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < values.length; i++){
+			if (i > 0)
+				text.append(',');
+			text.append(String.format("%.4f", values[i]));
+		}
+		return text.toString();
+	}
+}
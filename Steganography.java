@@ -0,0 +1,128 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.io.*;
+import java.awt.image.BufferedImage;
+import java.util.random.RandomGenerator;
+
+
+public class Steganography {
+	/*
+	 * Library API of CreateStego for images which are already in memory.
+	 *
+	 * The cover image can be a BufferedImage, PixelPlanes or a byte array of samples [see PixelPlanes for the layout].
+	 * The cover image is never changed: the stego image is a new image which is returned with the statistics of the
+	 * embedding process [see EmbeddingResult], and nothing is written to the disk. Errors are thrown, not printed.
+	 * The command line tool [CreateStego.main] and the file based methods of CreateStego use this API.
+	 *
+	 * Example:
+	 * 		EmbeddingResult result = Steganography.embed("LSBM", image, 1000, new SplittableRandom(1234), false, false);
+	 * 		BufferedImage stego = result.stego.image;
+	 */
+
+	public static EmbeddingResult embed(String MethodName, BufferedImage cover, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel) {
+		/*
+		 * Params:
+		 * 		1- MethodName: LSB, LSBP, LSBPP, LSBM, LSBMR or a registered method [see Embedders]
+		 * 		2- cover: the cover image [8 bit gray and 24 bit BGR images are used without conversion, see PixelPlanes.wrap]
+		 * 		3- MessageLength: number of bits that you want to hide in the image like 1000
+		 * 		4- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		 * 		    like new SplittableRandom(1234) [a fixed seed gives exactly the same stego image in every run]
+		 * 		5- ExactLength: embed exactly MessageLength bits [see EmbeddingKey]
+		 * 		6- Parallel: use all cores [the result is the same as false for the same seed]
+		 */
+		return embed(MethodName, PixelPlanes.wrap(cover), MessageLength, rand, ExactLength, Parallel);
+	}
+
+	public static EmbeddingResult embed(String MethodName, byte[] samples, int width, int height, boolean isGrayscale, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel) {
+		/*
+		 * Params:
+		 * 		2- samples: samples of the cover image, row by row from the top [gray: one byte per pixel, color: blue, green, red]
+		 * 		3, 4- width and height of the image
+		 * 		5- isGrayscale: true: one channel, false: three channels
+		 * 		the other parameters are like embed(MethodName, BufferedImage cover, ...)
+		 */
+		return embed(MethodName, PixelPlanes.wrap(samples, width, height, isGrayscale), MessageLength, rand, ExactLength, Parallel);
+	}
+
+	public static EmbeddingResult embed(String MethodName, PixelPlanes cover, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel) {
+		return embed(MethodName, cover, MessageLength, rand, ExactLength, Parallel, null, false, false);
+	}
+
+	public static EmbeddingResult embed(String MethodName, PixelPlanes cover, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, boolean WithChangeMap) {
+		// WithChangeMap: the changed samples are also collected [see EmbeddingResult.changeMap]
+		return embed(MethodName, cover, MessageLength, rand, ExactLength, Parallel, null, WithChangeMap, WithChangeMap);
+	}
+
+	public static EmbeddingResult embed(String MethodName, PixelPlanes cover, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, boolean WithReport, boolean WithChangeMap) {
+		/*
+		 * Params:
+		 * 		7- WithReport: the statistics are collected by the embedder [with the LSB+ compensation changes, see EmbeddingResult.report]
+		 * 		8- WithChangeMap: the changed samples are also collected [see EmbeddingResult.changeMap]
+		 * 		the other parameters are like embed(MethodName, BufferedImage cover, ...)
+		 */
+		return embed(MethodName, cover, MessageLength, rand, ExactLength, Parallel, null, WithReport, WithChangeMap);
+	}
+
+	static EmbeddingResult embed(String MethodName, PixelPlanes cover, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, int[][] cover_histograms, boolean WithReport, boolean WithChangeMap) {
+		// cover_histograms: histograms of the cover image for LSB+ and LSB++ [or null, see CoverImage]
+		Embedder embedder = Embedders.require(MethodName);
+		if (MessageLength < 0)
+			throw new IllegalArgumentException("Message length should not be negative: " + MessageLength);
+		int[][] histograms = embedder.usesCoverHistograms() ? cover_histograms : null;
+
+		PixelPlanes stego = cover.copy();
+		if (!WithReport && !WithChangeMap){
+			// Without a report the embedder can use its fastest path [the SIMD kernels of LSB and LSBM]; the statistics are computed on demand
+			long embedded = embedder.embed(stego, MessageLength, rand, ExactLength, Parallel, histograms);
+			return new EmbeddingResult(stego, embedder.name(), MessageLength, embedded, cover);
+		}
+
+		// The statistics are collected by the embedder [see EmbeddingReport], the images are not compared again
+		EmbeddingReport report;
+		if (WithChangeMap)
+			report = EmbeddingReport.withChangeMap(stego.width, stego.height, stego.channels);
+		else
+			report = EmbeddingReport.of(stego);
+		embedder.embed(stego, MessageLength, rand, ExactLength, Parallel, histograms, report);
+		return new EmbeddingResult(stego, embedder.name(), MessageLength, report);
+	}
+
+	public static EmbeddingResult embed(String MethodName, File cover, File stego, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, boolean Patch) throws IOException {
+		return embed(MethodName, cover, stego, MessageLength, rand, ExactLength, Parallel, Patch, false);
+	}
+
+	public static EmbeddingResult embed(String MethodName, File cover, File stego, int MessageLength, RandomGenerator rand, boolean ExactLength, boolean Parallel, boolean Patch, boolean WithChangeMap) throws IOException {
+		/*
+		 * Params:
+		 * 		2- cover: input bitmap image like /User/kazemmit/Documents/test.bmp
+		 * 		3- stego: output bitmap image like /User/kazemmit/Documents/test.bmp.LSB.bmp
+		 * 		8- Patch: the cover file is copied and only the changed bytes are written [see BmpCodec.patch]
+		 * 		9- WithChangeMap: the change map is written next to the stego image [see ChangeMap.file]
+		 * 		the other parameters are like embed(MethodName, BufferedImage cover, ...)
+		 * Reads the cover image, embeds and writes the stego image.
+		 * The cover histograms of LSB+ and LSB++ are taken from the cache of Histograms [if the file was counted before].
+		 */
+		Histograms.Source source = Histograms.Source.of(cover);
+		PixelPlanes planes = PixelPlanes.read(cover);
+		int[][] cover_histograms = null;
+		if (Embedders.require(MethodName).usesCoverHistograms())
+			cover_histograms = Histograms.of(source, planes, Parallel).toArray();
+		EmbeddingResult result = embed(MethodName, planes, MessageLength, rand, ExactLength, Parallel, cover_histograms, WithChangeMap, WithChangeMap);
+		if (Patch)
+			result.stego.writePatched(stego);
+		else
+			result.stego.write(stego);
+		if (WithChangeMap)
+			result.changeMap().write(ChangeMap.file(stego));
+		return result;
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+
+public class StreamingStego {
+	/*
+	 * Streaming [strip by strip] mode of CreateStego for images which do not fit in the heap.
+	 *
+	 * The cover bitmap file is never loaded as a whole: it is read in strips of CreateStego.BAND_ROWS rows, each strip
+	 * is embedded and written to the same offset of the stego file, so the memory does not depend on the image height.
+	 * The strips are the bands of the in-memory embedders with the same random streams, so for the same seed the stego
+	 * image is exactly the stego image of CreateStego [LSB, LSBM, LSBMR, LSBP and LSBPP].
+	 *
+	 * LSB, LSBM and LSBMR: one pass [read, embed, write].
+	 * LSB+ and LSB++ [see CreateStego.LSBPlusChannel]:
+	 * 		1- histogram pass: the histogram of each channel of the cover image [skipped if the histograms of the cover
+	 * 		    file are in the cache of Histograms]
+	 * 		2- embedding pass: the stego histogram after the embedding process is needed before the first pixel can be
+	 * 		    compensated, so the embedding process is run once only to count [nothing is written]
+	 * 		3- embedding and compensation pass: the embedding process is run again with the same random streams, and each
+	 * 		    unused pixel is compensated right away; then the strip is written
+	 * Only a strip, the histograms and [in exact length mode] the embedding key are kept in memory.
+	 *
+	 * Only uncompressed 24 bit and 8 bit gray bitmap images [see BmpCodec] with less than 2^31 pixels are supported.
+	 */
+
+	public static void embed(String MethodName, File cover, File stego, int MessageLength, RandomGenerator rand, boolean ExactLength) throws IOException {
+		/*
+		 * Params:
+		 * 		1- MethodName: LSB, LSBP, LSBPP, LSBM, LSBMR or a registered scan embedder [see ScanEmbedder]
+		 * 		2- cover: input bitmap image like /User/kazemmit/Documents/test.bmp
+		 * 		3- stego: output bitmap image like /User/kazemmit/Documents/test.bmp.LSB.bmp
+		 * 		4- MessageLength: number of bits that you want to hide in the input image like 1000
+		 * 		5- rand: source of the random numbers which simulate the embedding key and the encrypted message
+		 * 		6- ExactLength: embed exactly MessageLength bits [see EmbeddingKey]
+		 */
+		// Scan embedders [see ScanEmbedder] are streamed band by band; LSB+ and LSB++ need the histograms first
+		Embedder embedder = Embedders.require(MethodName);
+		if (!(embedder instanceof ScanEmbedder) && !(embedder instanceof Embedders.LSBPlus))
+			throw new IllegalArgumentException("The streaming mode does not support the method: " + embedder.name());
+		Histograms.Source source = Histograms.Source.of(cover);
+		try (FileChannel input = FileChannel.open(cover.toPath(), StandardOpenOption.READ)){
+			BmpCodec.Layout layout = BmpCodec.layout(input);
+			if (layout == null)
+				throw new IOException("The streaming mode needs an uncompressed 24 bit or 8 bit gray bitmap image: " + cover);
+			if ((long) layout.width*layout.height > Integer.MAX_VALUE || layout.stride*CreateStego.BAND_ROWS > Integer.MAX_VALUE)
+				throw new IOException("The image is too large for the streaming mode: " + cover);
+
+			try (FileChannel output = FileChannel.open(stego.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)){
+				// The headers and any data after the pixel array are copied; the pixel array is written strip by strip
+				long pixels_end = layout.offset + layout.stride*layout.height;
+				copy(input, output, 0, layout.offset);
+				copy(input, output, pixels_end, input.size() - pixels_end);
+
+				if (embedder instanceof Embedders.LSBPlus)
+					LSBPLUS_LSBPLUSPLUS(input, output, layout, source, MessageLength, ((Embedders.LSBPlus) embedder).LSBPP, rand, ExactLength);
+				else
+					bands((ScanEmbedder) embedder, input, output, layout, MessageLength, rand, ExactLength);
+			}
+		}
+	}
+
+	private static void bands(ScanEmbedder embedder, FileChannel input, FileChannel output, BmpCodec.Layout layout, int MessageLength, RandomGenerator rand, boolean ExactLength) throws IOException {
+		// LSB, LSBM, LSBMR and the other scan embedders: each strip is one band of CreateStego.forEachBand
+		int width = layout.width;
+		int height = layout.height;
+		int channels = layout.channels;
+		long samples = (long) width*channels*height;
+
+		// Calculating the embedding rate [bit per sample]
+		float Probability = (float)MessageLength / samples;
+
+		// Exact length mode: the same embedding key as the in-memory embedders
+		BitSet key = null;
+		if (ExactLength)
+			key = embedder.key(width, height, channels, MessageLength, rand);
+
+		int bands = (height + CreateStego.BAND_ROWS - 1) / CreateStego.BAND_ROWS;
+		long [] band_seeds = new long[bands];
+		for (int band = 0; band < bands; band++)
+			band_seeds[band] = rand.nextLong();
+
+		byte[] strip = new byte[(int) layout.stride*CreateStego.BAND_ROWS];
+		for (int band = 0; band < bands; band++){
+			int first_row = band*CreateStego.BAND_ROWS;
+			int last_row = Math.min(height, first_row + CreateStego.BAND_ROWS);
+			readStrip(input, layout, first_row, last_row, strip);
+			RandomGenerator band_rand = new SplittableRandom(band_seeds[band]);
+			for (int yPixel = first_row; yPixel < last_row; yPixel++){
+				int row_start = stripRow(layout, first_row, last_row, yPixel);
+				embedder.embedRow(strip, row_start, yPixel, width, channels, Probability, key, band_rand, null);
+			}
+			writeStrip(output, layout, first_row, last_row, strip);
+		}
+	}
+
+	private static void LSBPLUS_LSBPLUSPLUS(FileChannel input, FileChannel output, BmpCodec.Layout layout, Histograms.Source source, int MessageLength, boolean LSBPP, RandomGenerator rand, boolean ExactLength) throws IOException {
+		// Same random streams as CreateStego.LSBPLUS_LSBPLUSPLUS: the embedding key, then one seed per channel
+		int width = layout.width;
+		int height = layout.height;
+		int channels = layout.channels;
+
+		// Calculating the embedding rate [bit per pixel]
+		float Probability = (float)MessageLength / ((long) width*height*channels);
+
+		BitSet key = null;
+		if (ExactLength)
+			key = EmbeddingKey.select(exactPositions((long) width*height*channels), MessageLength, rand);
+
+		int [] channel_list;
+		if (channels == 1) // For gray scale images
+			channel_list = new int[] {PixelPlanes.GRAY};
+		else //Color Image
+			channel_list = new int[] {PixelPlanes.GREEN, PixelPlanes.BLUE, PixelPlanes.RED};
+		long [] channel_seeds = new long[channel_list.length];
+		for (int i = 0; i < channel_list.length; i++)
+			channel_seeds[i] = rand.nextLong();
+
+		byte[] strip = new byte[(int) layout.stride*CreateStego.BAND_ROWS];
+
+		// 1- Calculating the histogram of each channel [if it is not in the cache]
+		Histograms cached = Histograms.cached(source);
+		int [][] hist;
+		if (cached != null && cached.channels == channels)
+			hist = cached.toArray();
+		else{
+			hist = new int[channels][256];
+			for (int first_row = 0; first_row < height; first_row += CreateStego.BAND_ROWS){
+				int last_row = Math.min(height, first_row + CreateStego.BAND_ROWS);
+				readStrip(input, layout, first_row, last_row, strip);
+				for (int yPixel = first_row; yPixel < last_row; yPixel++){
+					int row_start = stripRow(layout, first_row, last_row, yPixel);
+					for (int position = row_start; position < row_start + width*channels; position += channels){
+						for (int channel = 0; channel < channels; channel++)
+							hist[channel][strip[position + channel] & 0xFF] +=1;
+					}
+				}
+			}
+			Histograms.store(source, new Histograms(hist));
+		}
+
+		// 2- Embedding process only to find the stego histogram after the embedding process
+		CreateStego.LSBPlusChannel [] counted = new CreateStego.LSBPlusChannel[channel_list.length];
+		for (int i = 0; i < channel_list.length; i++)
+			counted[i] = new CreateStego.LSBPlusChannel(hist[channel_list[i]], Probability, LSBPP, new SplittableRandom(channel_seeds[i]));
+		for (int first_row = 0; first_row < height; first_row += CreateStego.BAND_ROWS){
+			int last_row = Math.min(height, first_row + CreateStego.BAND_ROWS);
+			readStrip(input, layout, first_row, last_row, strip);
+			for (int yPixel = first_row; yPixel < last_row; yPixel++){
+				int row_start = stripRow(layout, first_row, last_row, yPixel);
+				for (int xPixel = 0; xPixel < width; xPixel++){
+					for (int i = 0; i < channel_list.length; i++){
+						int channel = channel_list[i];
+						int position = (int) (((long) yPixel*width + xPixel)*channels + channel);
+						counted[i].embed(strip[row_start + xPixel*channels + channel] & 0xFF, key, position);
+					}
+				}
+			}
+		}
+
+		// 3- Embedding process again [same random streams], and compensation of each unused pixel
+		// [counted has the stego histogram after the embedding process, like the compensation loop of the in-memory embedder]
+		CreateStego.LSBPlusChannel [] embedders = new CreateStego.LSBPlusChannel[channel_list.length];
+		for (int i = 0; i < channel_list.length; i++)
+			embedders[i] = new CreateStego.LSBPlusChannel(hist[channel_list[i]], Probability, LSBPP, new SplittableRandom(channel_seeds[i]));
+		for (int first_row = 0; first_row < height; first_row += CreateStego.BAND_ROWS){
+			int last_row = Math.min(height, first_row + CreateStego.BAND_ROWS);
+			readStrip(input, layout, first_row, last_row, strip);
+			for (int yPixel = first_row; yPixel < last_row; yPixel++){
+				int row_start = stripRow(layout, first_row, last_row, yPixel);
+				for (int xPixel = 0; xPixel < width; xPixel++){
+					for (int i = 0; i < channel_list.length; i++){
+						int channel = channel_list[i];
+						int index = row_start + xPixel*channels + channel;
+						int position = (int) (((long) yPixel*width + xPixel)*channels + channel);
+						int value = embedders[i].embed(strip[index] & 0xFF, key, position);
+						if (!embedders[i].used)
+							value = counted[i].compensate(value);
+						strip[index] = (byte)value;
+					}
+				}
+			}
+			writeStrip(output, layout, first_row, last_row, strip);
+		}
+	}
+
+	private static int exactPositions(long positions) {
+		// The embedding key [see EmbeddingKey] is a BitSet, which is indexed by int
+		if (positions > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("The exact length mode supports up to " + Integer.MAX_VALUE + " samples");
+		return (int) positions;
+	}
+
+	private static long stripOffset(BmpCodec.Layout layout, int first_row, int last_row) {
+		// The rows of a strip are stored together in the file [in reverse order for bottom-up bitmaps]
+		return layout.rowOffset(layout.bottom_up ? last_row - 1 : first_row);
+	}
+
+	private static int stripRow(BmpCodec.Layout layout, int first_row, int last_row, int yPixel) {
+		// Position of the first sample of row yPixel in the strip
+		return (int) ((layout.bottom_up ? last_row - 1 - yPixel : yPixel - first_row)*layout.stride);
+	}
+
+	private static void readStrip(FileChannel input, BmpCodec.Layout layout, int first_row, int last_row, byte[] strip) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(strip, 0, (int) ((last_row - first_row)*layout.stride)).slice();
+		BmpCodec.readFully(input, buffer, stripOffset(layout, first_row, last_row));
+	}
+
+	private static void writeStrip(FileChannel output, BmpCodec.Layout layout, int first_row, int last_row, byte[] strip) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(strip, 0, (int) ((last_row - first_row)*layout.stride)).slice();
+		BmpCodec.writeFully(output, buffer, stripOffset(layout, first_row, last_row));
+	}
+
+	private static void copy(FileChannel input, FileChannel output, long position, long count) throws IOException {
+		// Copies count bytes from position of input to the same position of output
+		long done = 0;
+		while (done < count){
+			long transferred = input.transferTo(position + done, count - done, output.position(position + done));
+			if (transferred <= 0)
+				throw new EOFException("Unexpected end of the bitmap file");
+			done += transferred;
+		}
+	}
+}
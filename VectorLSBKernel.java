@@ -0,0 +1,43 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+final class VectorLSBKernel extends LSBKernel {
+	/*
+	 * LSB kernel with the JDK Vector API [only loaded by LSBKernel.load if jdk.incubator.vector is available].
+	 * Each vector changes SPECIES.length() samples [32 with AVX2, 64 with AVX-512]:
+	 * 		stego = select != 0 ? (cover & 0xFE) | bit : cover
+	 */
+
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+	@Override
+	void apply(byte[] samples, int start, byte[] select, byte[] bits, int length) {
+		int i = 0;
+		int bound = SPECIES.loopBound(length);
+		for (; i < bound; i += SPECIES.length()){
+			ByteVector cover = ByteVector.fromArray(SPECIES, samples, start + i);
+			VectorMask<Byte> selected = ByteVector.fromArray(SPECIES, select, i).compare(VectorOperators.NE, 0);
+			ByteVector stego = cover.and((byte) 0xFE).or(ByteVector.fromArray(SPECIES, bits, i));
+			cover.blend(stego, selected).intoArray(samples, start + i);
+		}
+		// The last samples of the row [less than one vector]
+		for (; i < length; i++){
+			if (select[i] != 0)
+				samples[start + i] = (byte) ((samples[start + i] & 0xFE) | bits[i]);
+		}
+	}
+}
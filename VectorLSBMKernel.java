@@ -0,0 +1,51 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+final class VectorLSBMKernel extends LSBMKernel {
+	/*
+	 * LSB matching kernel with the JDK Vector API [only loaded if jdk.incubator.vector is available, see LSBMKernel].
+	 * The +-1 change wraps around in a byte, so the boundaries are handled by the direction mask:
+	 * 		down   = (direction != 0 && cover != 0) || cover == 255
+	 * 		stego  = select && flip ? (down ? cover - 1 : cover + 1) : cover
+	 */
+
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+	@Override
+	void apply(byte[] samples, int start, byte[] select, byte[] flip, byte[] direction, int length) {
+		int i = 0;
+		int bound = SPECIES.loopBound(length);
+		for (; i < bound; i += SPECIES.length()){
+			ByteVector cover = ByteVector.fromArray(SPECIES, samples, start + i);
+			VectorMask<Byte> changed = ByteVector.fromArray(SPECIES, select, i).compare(VectorOperators.NE, 0)
+					.and(ByteVector.fromArray(SPECIES, flip, i).compare(VectorOperators.NE, 0));
+			VectorMask<Byte> down = ByteVector.fromArray(SPECIES, direction, i).compare(VectorOperators.NE, 0)
+					.and(cover.compare(VectorOperators.NE, 0))
+					.or(cover.compare(VectorOperators.EQ, (byte) 0xFF));
+			ByteVector moved = cover.add((byte) 1).blend(cover.sub((byte) 1), down);
+			cover.blend(moved, changed).intoArray(samples, start + i);
+		}
+		// The last samples of the row [less than one vector]
+		for (; i < length; i++){
+			if (select[i] != 0 && flip[i] != 0){
+				int value = samples[start + i] & 0xFF;
+				boolean down = (direction[i] != 0 && value != 0) || value == 255;
+				samples[start + i] = (byte) (down ? value - 1 : value + 1);
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+package createstego.bench;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.SplittableRandom;
+
+
+final class Covers {
+	/*
+	 * Synthetic cover images of the benchmarks.
+	 *
+	 * A smooth pattern with noise, so every histogram bin is used [LSB+ and LSB++ skip the units with an empty bin]
+	 * and neighbouring pixels are correlated like in a photo. The same size and seed always give the same image.
+	 */
+
+	private Covers() {
+	}
+
+	static BufferedImage create(int width, int height, boolean gray, long seed) {
+		BufferedImage image = new BufferedImage(width, height, gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR);
+		byte[] samples = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		int channels = gray ? 1 : 3;
+		SplittableRandom rand = new SplittableRandom(seed);
+		int position = 0;
+		for (int yPixel = 0; yPixel < height; yPixel++){
+			for (int xPixel = 0; xPixel < width; xPixel++){
+				for (int channel = 0; channel < channels; channel++){
+					double pattern = 127.5 + 100*Math.sin((xPixel + 37*channel) * 0.013) * Math.cos((yPixel - 11*channel) * 0.009);
+					int value = (int) Math.round(pattern + rand.nextGaussian()*12);
+					samples[position++] = (byte) Math.max(0, Math.min(255, value));
+				}
+			}
+		}
+		return image;
+	}
+}
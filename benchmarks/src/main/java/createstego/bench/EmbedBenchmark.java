@@ -0,0 +1,107 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+package createstego.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class EmbedBenchmark {
+	/*
+	 * Embedding process of each method on an image in memory [nothing is read or written].
+	 * LSB and LSBM use the SIMD kernels [see LSBKernel, LSBMKernel]; for the scalar path run with -jvmArgsAppend -Dcreatestego.vector=false
+	 * The stego image is a copy of the cover image made before each iteration, and the operations of the iteration keep
+	 * embedding into it [the histograms stay like the cover image, and the copy does not count as an allocation of the embedders].
+	 */
+
+	// Width and height of the cover image
+	@Param({"512", "2048"})
+	public int size;
+
+	@Param({"gray", "color"})
+	public String format;
+
+	// Embedding rate in bit per pixel
+	@Param({"0.05", "0.4"})
+	public double rate;
+
+	private Object cover;
+	private Object stego;
+	private int messageLength;
+	private long pixels;
+	private SplittableRandom rand;
+
+	@Setup(Level.Trial)
+	public void createCover() {
+		cover = Stego.wrap(Covers.create(size, size, format.equals("gray"), 1));
+		pixels = (long) size*size;
+		messageLength = (int) Math.round(rate*pixels);
+		rand = new SplittableRandom(1234);
+	}
+
+	@Setup(Level.Iteration)
+	public void copyCover() {
+		stego = Stego.copy(cover);
+	}
+
+	@Benchmark
+	public Object LSB(Pixels counter) {
+		Stego.LSB(stego, messageLength, rand);
+		counter.add(pixels);
+		return stego;
+	}
+
+	@Benchmark
+	public Object LSBP(Pixels counter) {
+		Stego.LSBPLUS_LSBPLUSPLUS(stego, messageLength, false, rand);
+		counter.add(pixels);
+		return stego;
+	}
+
+	@Benchmark
+	public Object LSBPP(Pixels counter) {
+		Stego.LSBPLUS_LSBPLUSPLUS(stego, messageLength, true, rand);
+		counter.add(pixels);
+		return stego;
+	}
+
+	@Benchmark
+	public Object LSBM(Pixels counter) {
+		Stego.LSBM(stego, messageLength, rand);
+		counter.add(pixels);
+		return stego;
+	}
+
+	@Benchmark
+	public Object LSBMR(Pixels counter) {
+		Stego.LSBMR(stego, messageLength, rand);
+		counter.add(pixels);
+		return stego;
+	}
+}
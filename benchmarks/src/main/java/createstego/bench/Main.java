@@ -0,0 +1,29 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+package createstego.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+public class Main {
+	/*
+	 * Runs the benchmarks with the GC profiler [allocation rate: gc.alloc.rate.norm is bytes per operation].
+	 * All JMH command line options can be used, like:
+	 * 		java -jar target/benchmarks.jar EmbedBenchmark -p size=512 -p format=gray
+	 * The megapixels counter of each benchmark is the throughput in MPixel/s.
+	 */
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions options = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+package createstego.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeasureBenchmark {
+	/*
+	 * ImgHist and MSE [both read and decode their bitmap files; the histogram cache is cleared before every call of
+	 * ImgHist, see UncachedHistograms], and Histograms.of, Distortion.measure and Steganalysis.analyze on the images in
+	 * memory [serial and parallel].
+	 * The cover and stego [LSB, 0.4 bit per pixel] files are written to a temporary directory before the trial.
+	 */
+
+	// Width and height of the cover image
+	@Param({"512", "2048"})
+	public int size;
+
+	@Param({"gray", "color"})
+	public String format;
+
+	private File directory;
+	private String cover;
+	private String stego;
+	private Object cover_planes;
+	private Object stego_planes;
+	private long pixels;
+
+	@Setup(Level.Trial)
+	public void createFiles() throws IOException {
+		directory = Files.createTempDirectory("createstego-bench").toFile();
+		Object planes = Stego.wrap(Covers.create(size, size, format.equals("gray"), 1));
+		pixels = (long) size*size;
+		File cover_file = new File(directory, "cover.bmp");
+		Stego.write(planes, cover_file);
+		cover_planes = Stego.copy(planes);
+		Stego.LSB(planes, (int) Math.round(0.4*pixels), new SplittableRandom(1234));
+		stego_planes = planes;
+		File stego_file = new File(directory, "cover.bmp.LSB.bmp");
+		Stego.write(planes, stego_file);
+		cover = cover_file.getPath();
+		stego = stego_file.getPath();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFiles() {
+		File[] files = directory.listFiles();
+		if (files != null){
+			for (File file : files)
+				file.delete();
+		}
+		directory.delete();
+	}
+
+	@State(Scope.Thread)
+	public static class UncachedHistograms {
+		// ImgHist would only be a lookup of the histogram cache after the first call [see Histograms.read]
+		@Setup(Level.Invocation)
+		public void clearCache() {
+			Stego.clearHistogramCache();
+		}
+	}
+
+	@Benchmark
+	public int[][] ImgHist(Pixels counter, UncachedHistograms uncached) {
+		int[][] hist = Stego.ImgHist(cover);
+		counter.add(pixels);
+		return hist;
+	}
+
+	@Benchmark
+	public double MSE(Pixels counter) {
+		double mse = Stego.MSE(cover, stego);
+		counter.add(pixels);
+		return mse;
+	}
+
+	@Benchmark
+	public Object Histograms(Pixels counter) {
+		Object histograms = Stego.histograms(cover_planes, false);
+		counter.add(pixels);
+		return histograms;
+	}
+
+	@Benchmark
+	public Object Steganalysis(Pixels counter) {
+		Object scores = Stego.steganalysis(stego_planes, false);
+		counter.add(pixels);
+		return scores;
+	}
+
+	@Benchmark
+	public Object Distortion(Pixels counter) {
+		Object distortion = Stego.distortion(cover_planes, stego_planes, false);
+		counter.add(pixels);
+		return distortion;
+	}
+
+	@Benchmark
+	public Object DistortionParallel(Pixels counter) {
+		Object distortion = Stego.distortion(cover_planes, stego_planes, true);
+		counter.add(pixels);
+		return distortion;
+	}
+}
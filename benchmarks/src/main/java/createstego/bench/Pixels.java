@@ -0,0 +1,35 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+package createstego.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Pixels {
+	/*
+	 * Number of processed pixels [in megapixels]; JMH reports it per second, which is the throughput in MPixel/s.
+	 */
+	public double megapixels;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		megapixels = 0;
+	}
+
+	void add(long pixels) {
+		megapixels += pixels / 1e6;
+	}
+}
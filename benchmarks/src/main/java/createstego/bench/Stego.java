@@ -0,0 +1,224 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+package createstego.bench;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.random.RandomGenerator;
+
+
+final class Stego {
+	/*
+	 * Access to CreateStego from the benchmarks.
+	 *
+	 * CreateStego is in the default package, which can not be imported by a named package [and JMH does not accept
+	 * benchmarks in the default package], so its methods are called through method handles. The handles are static
+	 * final fields, so the JIT compiles each call like a direct call [the measured time is the time of CreateStego].
+	 * PixelPlanes objects are passed as Object.
+	 */
+
+	private static final MethodHandle WRAP;
+	private static final MethodHandle COPY;
+	private static final MethodHandle WRITE;
+	private static final MethodHandle LSB;
+	private static final MethodHandle LSBPLUS_LSBPLUSPLUS;
+	private static final MethodHandle LSBM;
+	private static final MethodHandle LSBMR;
+	private static final MethodHandle IMGHIST;
+	private static final MethodHandle MSE;
+	private static final MethodHandle DISTORTION;
+	private static final MethodHandle HISTOGRAMS;
+	private static final MethodHandle STEGANALYSIS;
+	private static final MethodHandle CLEAR_HISTOGRAM_CACHE;
+
+	static {
+		try{
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			Class<?> create_stego = Class.forName("CreateStego");
+			Class<?> pixel_planes = Class.forName("PixelPlanes");
+			// The embedders return the number of embedded bits, which is dropped by asType
+			MethodType embedder = MethodType.methodType(long.class, pixel_planes, int.class, RandomGenerator.class, boolean.class, boolean.class);
+
+			WRAP = lookup.findStatic(pixel_planes, "wrap", MethodType.methodType(pixel_planes, BufferedImage.class))
+					.asType(MethodType.methodType(Object.class, BufferedImage.class));
+			COPY = lookup.findVirtual(pixel_planes, "copy", MethodType.methodType(pixel_planes))
+					.asType(MethodType.methodType(Object.class, Object.class));
+			WRITE = lookup.findVirtual(pixel_planes, "write", MethodType.methodType(void.class, File.class))
+					.asType(MethodType.methodType(void.class, Object.class, File.class));
+			LSB = embedderHandle(lookup.findStatic(create_stego, "LSB", embedder));
+			LSBM = embedderHandle(lookup.findStatic(create_stego, "LSBM", embedder));
+			LSBMR = embedderHandle(lookup.findStatic(create_stego, "LSBMR", embedder));
+			LSBPLUS_LSBPLUSPLUS = lookup.findStatic(create_stego, "LSBPLUS_LSBPLUSPLUS",
+					MethodType.methodType(long.class, pixel_planes, int.class, boolean.class, RandomGenerator.class, boolean.class, boolean.class))
+					.asType(MethodType.methodType(void.class, Object.class, int.class, boolean.class, RandomGenerator.class, boolean.class, boolean.class));
+			IMGHIST = lookup.findStatic(create_stego, "ImgHist", MethodType.methodType(int[][].class, String.class));
+			MSE = lookup.findStatic(create_stego, "MSE", MethodType.methodType(double.class, String.class, String.class));
+			DISTORTION = lookup.findStatic(Class.forName("Distortion"), "measure", MethodType.methodType(Class.forName("Distortion"), pixel_planes, pixel_planes, boolean.class))
+					.asType(MethodType.methodType(Object.class, Object.class, Object.class, boolean.class));
+			HISTOGRAMS = lookup.findStatic(Class.forName("Histograms"), "of", MethodType.methodType(Class.forName("Histograms"), pixel_planes, boolean.class))
+					.asType(MethodType.methodType(Object.class, Object.class, boolean.class));
+			STEGANALYSIS = lookup.findStatic(Class.forName("Steganalysis"), "analyze", MethodType.methodType(Class.forName("Steganalysis"), pixel_planes, boolean.class))
+					.asType(MethodType.methodType(Object.class, Object.class, boolean.class));
+			CLEAR_HISTOGRAM_CACHE = lookup.findStatic(Class.forName("Histograms"), "clearCache", MethodType.methodType(void.class));
+		}
+		catch (ReflectiveOperationException err)
+		{
+			throw new ExceptionInInitializerError(err);
+		}
+	}
+
+	private static MethodHandle embedderHandle(MethodHandle handle) {
+		return handle.asType(MethodType.methodType(void.class, Object.class, int.class, RandomGenerator.class, boolean.class, boolean.class));
+	}
+
+	private Stego() {
+	}
+
+	static Object wrap(BufferedImage image) {
+		try{
+			return (Object) WRAP.invokeExact(image);
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	static Object copy(Object planes) {
+		try{
+			return (Object) COPY.invokeExact(planes);
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	static void write(Object planes, File file) {
+		try{
+			WRITE.invokeExact(planes, file);
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	static void LSB(Object planes, int MessageLength, RandomGenerator rand) {
+		try{
+			LSB.invokeExact(planes, MessageLength, rand, false, false);
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	static void LSBPLUS_LSBPLUSPLUS(Object planes, int MessageLength, boolean LSBPP, RandomGenerator rand) {
+		try{
+			LSBPLUS_LSBPLUSPLUS.invokeExact(planes, MessageLength, LSBPP, rand, false, false);
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	static void LSBM(Object planes, int MessageLength, RandomGenerator rand) {
+		try{
+			LSBM.invokeExact(planes, MessageLength, rand, false, false);
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	static void LSBMR(Object planes, int MessageLength, RandomGenerator rand) {
+		try{
+			LSBMR.invokeExact(planes, MessageLength, rand, false, false);
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	static int[][] ImgHist(String BMPFileName) {
+		try{
+			return (int[][]) IMGHIST.invokeExact(BMPFileName);
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	static double MSE(String Cover, String Stego) {
+		try{
+			return (double) MSE.invokeExact(Cover, Stego);
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	static Object distortion(Object cover, Object stego, boolean Parallel) {
+		try{
+			return (Object) DISTORTION.invokeExact(cover, stego, Parallel);
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	static Object histograms(Object planes, boolean Parallel) {
+		try{
+			return (Object) HISTOGRAMS.invokeExact(planes, Parallel);
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	static Object steganalysis(Object planes, boolean Parallel) {
+		try{
+			return (Object) STEGANALYSIS.invokeExact(planes, Parallel);
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	static void clearHistogramCache() {
+		try{
+			CLEAR_HISTOGRAM_CACHE.invokeExact();
+		}
+		catch (Throwable err)
+		{
+			throw rethrow(err);
+		}
+	}
+
+	private static RuntimeException rethrow(Throwable err) {
+		if (err instanceof RuntimeException)
+			return (RuntimeException) err;
+		if (err instanceof Error)
+			throw (Error) err;
+		return new IllegalStateException(err);
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class BatchRunnerTest {
+
+	@TempDir
+	File directory;
+
+	private File cover(String path, long seed) throws IOException {
+		byte[] samples = new byte[64*48*3];
+		new SplittableRandom(seed).nextBytes(samples);
+		File file = new File(directory, path);
+		file.getParentFile().mkdirs();
+		PixelPlanes.wrap(samples, 64, 48, false).write(file);
+		return file;
+	}
+
+	@Test
+	void coversWithTheSameNameDoNotCollide() throws IOException {
+		cover("a/img.bmp", 1);
+		cover("b/img.bmp", 1);
+		File manifest = new File(directory, "covers.txt");
+		Files.write(manifest.toPath(), "a/img.bmp\nb/img.bmp\n".getBytes());
+		File output = new File(directory, "out");
+
+		assertEquals(0, BatchRunner.run(manifest, new String[] {"LSBM"}, new String[] {"0.5bpp"}, 1234L, false, 2, output));
+		File stego_a = new File(output, "a/img.bmp.0.5bpp.LSBM.bmp");
+		File stego_b = new File(output, "b/img.bmp.0.5bpp.LSBM.bmp");
+		assertTrue(stego_a.isFile());
+		assertTrue(stego_b.isFile());
+		// Same cover image, but each job has its own seed
+		assertFalse(Arrays.equals(Files.readAllBytes(stego_a.toPath()), Files.readAllBytes(stego_b.toPath())));
+	}
+
+	@Test
+	void coverKeys() throws IOException {
+		File cover = cover("a/img.bmp", 2);
+		assertEquals("img.bmp", BatchRunner.coverKey(new File(directory, "a"), cover));
+		assertEquals("a/img.bmp", BatchRunner.coverKey(new File(directory, "covers.txt"), cover));
+		String outside = BatchRunner.coverKey(new File(directory, "a/b/covers.txt"), cover);
+		assertFalse(outside.startsWith("/"));
+		assertTrue(outside.endsWith("/a/img.bmp"));
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+
+class ChangeMapTest {
+
+	@Test
+	void renderedValues() {
+		PixelPlanes cover = PixelPlanes.wrap(new byte[] {10, 10, 10, 10, 10, 10}, 6, 1, true);
+		PixelPlanes stego = PixelPlanes.wrap(new byte[] {10, 11, 9, 12, 8, 10}, 6, 1, true);
+		PixelPlanes rendered = ChangeMap.diff(cover, stego).render();
+		int[] expected = {128, 255, 0, 255, 0, 128};
+		for (int pixel = 0; pixel < expected.length; pixel++)
+			assertEquals(expected[pixel], rendered.get(pixel, 0), "pixel " + pixel);
+	}
+
+	@Test
+	void builderMergesChunksAndParts() {
+		// More changes than one chunk, in random order, with several changes of the same sample in different parts
+		int width = 300, height = 300, channels = 3;
+		int[] deltas = new int[width*height*channels];
+		ChangeMap.Builder builder = new ChangeMap.Builder(width, height, channels);
+		SplittableRandom rand = new SplittableRandom(5);
+		for (int part = 0; part < 4; part++){
+			ChangeMap.Builder part_builder = new ChangeMap.Builder(width, height, channels);
+			for (int i = 0; i < 100000; i++){
+				int sample = rand.nextInt(deltas.length);
+				int delta = rand.nextInt(5) - 2;
+				part_builder.add(sample, delta);
+				deltas[sample] += delta;
+			}
+			builder.add(part_builder);
+		}
+		ChangeMap changes = builder.build();
+
+		int size = 0;
+		for (int sample = 0; sample < deltas.length; sample++){
+			assertEquals(deltas[sample], changes.delta(sample / channels, sample % channels), "sample " + sample);
+			if (deltas[sample] != 0)
+				size++;
+		}
+		assertEquals(size, changes.size);
+		// The same as the change map of the images
+		PixelPlanes cover = PixelPlanes.wrap(new byte[deltas.length], width, height, false);
+		for (int i = 0; i < deltas.length; i++)
+			cover.samples[i] = (byte) 100;
+		PixelPlanes stego = cover.copy();
+		changes.apply(stego);
+		ChangeMap diff = ChangeMap.diff(cover, stego);
+		assertEquals(diff.size, changes.size);
+		assertEquals(diff.encodedSize(), changes.encodedSize());
+	}
+}
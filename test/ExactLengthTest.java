@@ -0,0 +1,89 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+
+class ExactLengthTest {
+
+	private static PixelPlanes cover(boolean isGrayscale) {
+		// A smooth image [like a photograph, so LSB+ and LSB++ have locked pixels and unavailable bins at the edges of the histogram]
+		int width = 301, height = 200, channels = isGrayscale ? 1 : 3;
+		byte[] samples = new byte[width*height*channels];
+		SplittableRandom rand = new SplittableRandom(11);
+		for (int y = 0; y < height; y++){
+			for (int x = 0; x < width; x++){
+				for (int channel = 0; channel < channels; channel++)
+					samples[(y*width + x)*channels + channel] = (byte) Math.max(0, Math.min(255, 40 + x/2 + y/3 + 30*channel + rand.nextInt(5) - 2));
+			}
+		}
+		return PixelPlanes.wrap(samples, width, height, isGrayscale);
+	}
+
+	@Test
+	void scanMethodsEmbedExactlyMessageLength() {
+		for (boolean isGrayscale : new boolean[] {true, false}){
+			PixelPlanes cover = cover(isGrayscale);
+			for (String method : new String[] {"LSB", "LSBM", "LSBMR"}){
+				EmbeddingResult result = Steganography.embed(method, cover, 20000, new SplittableRandom(1234), true, false);
+				assertEquals(20000, result.embeddedBits, method);
+			}
+		}
+	}
+
+	@Test
+	void lsbPlusEmbedsAtMostMessageLength() {
+		// The failed_to_hide skips are not replaced by other positions
+		for (boolean isGrayscale : new boolean[] {true, false}){
+			PixelPlanes cover = cover(isGrayscale);
+			for (String method : new String[] {"LSBP", "LSBPP"}){
+				EmbeddingResult result = Steganography.embed(method, cover, 20000, new SplittableRandom(1234), true, false);
+				assertTrue(result.embeddedBits <= 20000, method + ": " + result.embeddedBits);
+				assertTrue(result.embeddedBits >= 18000, method + ": " + result.embeddedBits);
+			}
+		}
+	}
+
+	@Test
+	void lsbPlusCarriesASkippedBitToTheNextSample() {
+		// Bin (0, 1) is empty in the cover, so a selected sample with value 0 or 1 can not carry a bit
+		int[] hist = new int[256];
+		Arrays.fill(hist, 100);
+		hist[0] = 0;
+		BitSet selected = new BitSet();
+		selected.set(0);
+		selected.set(3);
+		selected.set(4);
+		CreateStego.LSBPlusChannel state = new CreateStego.LSBPlusChannel(hist, 0, false, new SplittableRandom(3));
+
+		// Position 0 is selected but skipped; its bit is carried to position 1, which was not selected
+		state.embed(1, selected, 0);
+		assertFalse(state.used);
+		state.embed(10, selected, 1);
+		assertTrue(state.used);
+		// Nothing is carried any more
+		state.embed(20, selected, 2);
+		assertFalse(state.used);
+		// Position 3 is skipped and its bit lands on position 4, which was selected itself: one bit for two positions
+		state.embed(0, selected, 3);
+		assertFalse(state.used);
+		state.embed(30, selected, 4);
+		assertTrue(state.used);
+		state.embed(40, selected, 5);
+		assertFalse(state.used);
+		assertEquals(2, state.failed_to_hide_skips);
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.random.RandomGenerator;
+import org.junit.jupiter.api.Test;
+
+
+class LSBMRTest {
+
+	private static final class Script implements RandomGenerator {
+		// Gives the random numbers of a test case in order and counts the numbers which were drawn
+		final float[] floats;
+		int drawn;
+
+		Script(float... floats) {
+			this.floats = floats;
+		}
+
+		@Override
+		public float nextFloat() {
+			return floats[drawn++];
+		}
+
+		@Override
+		public long nextLong() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	@Test
+	void tableMatchesTheBranchingDecisions() {
+		// Every cover pair, message bits and direction of the xj change [0.25: <= 0.5, 0.75: > 0.5]
+		for (int xi = 0; xi < 256; xi++){
+			for (int xj = 0; xj < 256; xj++){
+				for (int bits = 0; bits < 8; bits++){
+					float[] floats = {(bits & 1) != 0 ? 0.25f : 0.75f, (bits & 2) != 0 ? 0.25f : 0.75f, (bits & 4) != 0 ? 0.25f : 0.75f};
+					byte[] samples = {(byte) xi, (byte) xj};
+					Script rand = new Script(floats);
+					CreateStego.LSBMR_pair(samples, 0, 1, rand);
+					byte[] expected = {(byte) xi, (byte) xj};
+					Script reference_rand = new Script(floats);
+					referencePair(expected, 0, 1, reference_rand);
+					String name = "xi " + xi + ", xj " + xj + ", bits " + bits;
+					assertArrayEquals(expected, samples, name);
+					assertEquals(reference_rand.drawn, rand.drawn, name + ": random numbers");
+				}
+			}
+		}
+	}
+
+	private static void referencePair(byte[] samples, int position_1, int position_2, RandomGenerator rand) {
+		// The branching LSBMR pair of the first implementation
+		int xi = samples[position_1] & 0xFF;
+		int xj = samples[position_2] & 0xFF;
+		int mi = 0;
+		int mj = 0;
+		float P_m   = rand.nextFloat();
+		if (P_m <= 0.5)//Simulating the encrypted message
+			mi = 1;
+
+		P_m   = rand.nextFloat();
+		if (P_m <= 0.5)//Simulating the encrypted message
+			mj = 1;
+		if (mi==LSB_bit(xi)){
+			if (mj!=f_LSBMR(xi,xj))
+			{
+				float P_increase_decrease   = rand.nextFloat();
+				if (P_increase_decrease <= 0.5){
+					if (xj<255)
+						xj +=1;
+				}
+				else{
+					if (xj>0)
+						xj -=1;
+				}
+			}
+		}
+		else
+		{
+			if (mj==f_LSBMR(xi-1,xj)){
+				if (xi>0)
+					xi -=1;
+			}
+			else{
+				if (xi<255)
+					xi +=1;
+			}
+		}
+		samples[position_1] = (byte)xi;
+		samples[position_2] = (byte)xj;
+	}
+
+	private static int f_LSBMR(int xi,int xj){
+		return ((xi/2)+xj) - (((xi/2)+xj)/2)*2;
+	}
+
+	private static int LSB_bit(int x){
+		return x - (x/2)*2;
+	}
+}
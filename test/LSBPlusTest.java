@@ -0,0 +1,191 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import org.junit.jupiter.api.Test;
+
+
+class LSBPlusTest {
+
+	static PixelPlanes cover(boolean isGrayscale) {
+		// A smooth image with noise [like a photograph: empty bins at the edges of the histogram and unequal pairs of bins, so
+		// LSB+ has unavailable bins and LSB++ locked pixels]
+		int width = 257, height = 150, channels = isGrayscale ? 1 : 3;
+		byte[] samples = new byte[width*height*channels];
+		SplittableRandom rand = new SplittableRandom(17);
+		for (int y = 0; y < height; y++){
+			for (int x = 0; x < width; x++){
+				for (int channel = 0; channel < channels; channel++)
+					samples[(y*width + x)*channels + channel] = (byte) Math.max(0, Math.min(255, 30 + x/2 + y/2 + 25*channel + rand.nextInt(7) - 3));
+			}
+		}
+		return PixelPlanes.wrap(samples, width, height, isGrayscale);
+	}
+
+	static int[][] histograms(PixelPlanes planes) {
+		int[][] hist = new int[planes.channels][256];
+		for (int position = 0; position < planes.samples.length; position++)
+			hist[position % planes.channels][planes.samples[position] & 0xFF]++;
+		return hist;
+	}
+
+	@Test
+	void histogramOfEachChannelIsPreserved() {
+		for (boolean isGrayscale : new boolean[] {true, false}){
+			PixelPlanes cover = cover(isGrayscale);
+			int[][] cover_hist = histograms(cover);
+			for (String method : new String[] {"LSBP", "LSBPP"}){
+				for (boolean ExactLength : new boolean[] {false, true}){
+					for (int MessageLength : new int[] {cover.samples.length / 20, cover.samples.length / 2}){
+						String name = method + (isGrayscale ? " gray" : " color") + (ExactLength ? " exact " : " ") + MessageLength;
+						EmbeddingResult result = Steganography.embed(method, cover, MessageLength, new SplittableRandom(1234), ExactLength, false);
+						assertTrue(result.totalChangedSamples() > 0, name);
+						int[][] stego_hist = histograms(result.stego);
+						for (int channel = 0; channel < cover.channels; channel++)
+							assertArrayEquals(cover_hist[channel], stego_hist[channel], name + ", channel " + channel);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void parallelChannelsEqualTheSerialEmbedding() throws Exception {
+		for (boolean isGrayscale : new boolean[] {true, false}){
+			PixelPlanes cover = cover(isGrayscale);
+			for (String method : new String[] {"LSBP", "LSBPP"}){
+				for (boolean ExactLength : new boolean[] {false, true}){
+					String name = method + (isGrayscale ? " gray" : " color") + (ExactLength ? " exact" : "");
+					byte[] serial = ParallelTest.embed(method, cover, cover.samples.length / 3, 99, ExactLength, false, 1);
+					for (int threads : new int[] {1, 2, 4})
+						assertArrayEquals(serial, ParallelTest.embed(method, cover, cover.samples.length / 3, 99, ExactLength, true, threads), name + ", " + threads + " threads");
+				}
+			}
+		}
+	}
+
+	@Test
+	void fusedLockingEqualsASeparateLockingPass() {
+		for (boolean isGrayscale : new boolean[] {true, false}){
+			PixelPlanes cover = cover(isGrayscale);
+			for (boolean LSBPP : new boolean[] {false, true}){
+				for (boolean ExactLength : new boolean[] {false, true}){
+					for (int MessageLength : new int[] {cover.samples.length / 20, cover.samples.length / 2}){
+						String name = (LSBPP ? "LSBPP" : "LSBP") + (isGrayscale ? " gray" : " color") + (ExactLength ? " exact " : " ") + MessageLength;
+						PixelPlanes stego = cover.copy();
+						long embedded = CreateStego.LSBPLUS_LSBPLUSPLUS(stego, MessageLength, LSBPP, new SplittableRandom(4321), ExactLength, false, null);
+						PixelPlanes expected = cover.copy();
+						long expected_embedded = referenceEmbed(expected, MessageLength, LSBPP, new SplittableRandom(4321), ExactLength);
+						assertEquals(expected_embedded, embedded, name);
+						assertArrayEquals(expected.samples, stego.samples, name);
+					}
+				}
+			}
+		}
+	}
+
+	private static long referenceEmbed(PixelPlanes planes, int MessageLength, boolean LSBPP, RandomGenerator rand, boolean ExactLength) {
+		// LSB+ and LSB++ with the locking process as a separate pass before the embedding pass [same random numbers as CreateStego]
+		float Probability = (float) MessageLength / (planes.width*planes.height*planes.channels);
+		BitSet selected = ExactLength ? EmbeddingKey.select(planes.samples.length, MessageLength, rand) : null;
+		int[] channel_list = planes.isGrayscale ? new int[] {PixelPlanes.GRAY} : new int[] {PixelPlanes.GREEN, PixelPlanes.BLUE, PixelPlanes.RED};
+		long[] channel_seeds = new long[channel_list.length];
+		for (int i = 0; i < channel_list.length; i++)
+			channel_seeds[i] = rand.nextLong();
+		long embedded = 0;
+		for (int i = 0; i < channel_list.length; i++)
+			embedded += referenceChannel(planes, channel_list[i], Probability, LSBPP, new SplittableRandom(channel_seeds[i]), selected);
+		return embedded;
+	}
+
+	private static long referenceChannel(PixelPlanes planes, int channel, float Probability, boolean LSBPP, RandomGenerator rand, BitSet selected) {
+		byte[] samples = planes.samples;
+		int channels = planes.channels;
+		int pixels = planes.width*planes.height;
+		int[] hist = new int[256];
+		for (int pixel = 0; pixel < pixels; pixel++)
+			hist[samples[pixel*channels + channel] & 0xFF]++;
+		int[] hist_stego = hist.clone();
+		int[] hist_embedded = new int[256];
+		boolean[] bin_available = new boolean[128];
+		for (int i = 0; i < 128; i++)
+			bin_available[i] = hist[2*i] != 0 && hist[2*i + 1] != 0;
+
+		// Locking pass: the first |hist[2k] - hist[2k+1]| pixels of the larger bin of each pair are locked
+		BitSet locked = new BitSet(pixels);
+		if (LSBPP){
+			int[] hist_dif = new int[256];
+			for (int i = 0; i < 128; i++){
+				if (hist[2*i] > hist[2*i + 1])
+					hist_dif[2*i] = hist[2*i] - hist[2*i + 1];
+				if (hist[2*i] < hist[2*i + 1])
+					hist_dif[2*i + 1] = hist[2*i + 1] - hist[2*i];
+			}
+			for (int pixel = 0; pixel < pixels; pixel++){
+				int value = samples[pixel*channels + channel] & 0xFF;
+				if (hist_dif[value] > 0){
+					hist_dif[value]--;
+					locked.set(pixel);
+				}
+			}
+		}
+
+		// Embedding pass
+		BitSet used = new BitSet(pixels);
+		boolean failed_to_hide = false;
+		for (int pixel = 0; pixel < pixels; pixel++){
+			int position = pixel*channels + channel;
+			int value = samples[position] & 0xFF;
+			boolean select = selected == null ? rand.nextFloat() <= Probability : selected.get(position);
+			if (!select && !failed_to_hide)
+				continue;
+			if (locked.get(pixel) || !bin_available[value/2]){
+				failed_to_hide = true;
+				continue;
+			}
+			int stego = rand.nextFloat() <= 0.5 ? (value/2)*2 : (value/2)*2 + 1;
+			failed_to_hide = false;
+			hist_stego[value]--;
+			hist_stego[stego]++;
+			hist_embedded[stego]++;
+			if (hist[stego] == hist_embedded[stego])
+				bin_available[stego/2] = false;
+			samples[position] = (byte) stego;
+			used.set(pixel);
+		}
+
+		// Compensation pass over the unused pixels
+		for (int pixel = 0; pixel < pixels; pixel++){
+			if (used.get(pixel))
+				continue;
+			int position = pixel*channels + channel;
+			int value = samples[position] & 0xFF;
+			int even = (value/2)*2, odd = even + 1;
+			if (value == odd && hist[odd] < hist_stego[odd]){
+				value = even;
+				hist_stego[odd]--;
+				hist_stego[even]++;
+			}
+			if (value == even && hist[even] < hist_stego[even]){
+				value = odd;
+				hist_stego[even]--;
+				hist_stego[odd]++;
+			}
+			samples[position] = (byte) value;
+		}
+		return used.cardinality();
+	}
+}
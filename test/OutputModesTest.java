@@ -0,0 +1,91 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class OutputModesTest {
+	/*
+	 * The output modes write the same stego file as the normal write for the same seed. The covers have 257 pixels per
+	 * row [padded rows in the bitmap file] and several strips of CreateStego.BAND_ROWS rows.
+	 */
+
+	static final String[] METHODS = {"LSB", "LSBP", "LSBPP", "LSBM", "LSBMR"};
+
+	@TempDir
+	File directory;
+
+	private File cover(boolean isGrayscale) throws IOException {
+		File file = new File(directory, isGrayscale ? "gray.bmp" : "color.bmp");
+		LSBPlusTest.cover(isGrayscale).write(file);
+		return file;
+	}
+
+	private byte[] embed(String method, File cover, String name, boolean ExactLength, boolean Patch) throws IOException {
+		return embed(method, cover, name, 8000, ExactLength, Patch);
+	}
+
+	private byte[] embed(String method, File cover, String name, int MessageLength, boolean ExactLength, boolean Patch) throws IOException {
+		File stego = new File(directory, name);
+		Steganography.embed(method, cover, stego, MessageLength, new SplittableRandom(1234), ExactLength, false, Patch);
+		return Files.readAllBytes(stego.toPath());
+	}
+
+	private byte[] stream(String method, File cover, String name, int MessageLength, boolean ExactLength) throws IOException {
+		File stego = new File(directory, name);
+		StreamingStego.embed(method, cover, stego, MessageLength, new SplittableRandom(1234), ExactLength);
+		return Files.readAllBytes(stego.toPath());
+	}
+
+	@Test
+	void patchWritesTheSameFile() throws IOException {
+		for (boolean isGrayscale : new boolean[] {true, false}){
+			File cover = cover(isGrayscale);
+			for (String method : METHODS){
+				for (boolean ExactLength : new boolean[] {false, true}){
+					String name = cover.getName() + "." + method + (ExactLength ? ".exact" : "");
+					byte[] written = embed(method, cover, name + ".bmp", ExactLength, false);
+					assertFalse(Arrays.equals(Files.readAllBytes(cover.toPath()), written), name);
+					// The patched file replaces an existing [longer] file
+					Files.write(new File(directory, name + ".patch.bmp").toPath(), new byte[written.length + 1000]);
+					assertArrayEquals(written, embed(method, cover, name + ".patch.bmp", ExactLength, true), name);
+				}
+			}
+		}
+	}
+
+	@Test
+	void streamingWritesTheInMemoryStegoImage() throws IOException {
+		for (boolean isGrayscale : new boolean[] {true, false}){
+			File cover = cover(isGrayscale);
+			for (String method : METHODS){
+				for (boolean ExactLength : new boolean[] {false, true}){
+					for (int MessageLength : new int[] {2000, 30000}){
+						String name = cover.getName() + "." + method + (ExactLength ? ".exact." : ".") + MessageLength;
+						byte[] written = embed(method, cover, name + ".bmp", MessageLength, ExactLength, false);
+						// LSB+ and LSB++ count the histograms in a first pass, or take them from the cache
+						Histograms.clearCache();
+						assertArrayEquals(written, stream(method, cover, name + ".stream.bmp", MessageLength, ExactLength), name);
+						Histograms.read(cover);
+						assertArrayEquals(written, stream(method, cover, name + ".cached.bmp", MessageLength, ExactLength), name + ", cached histograms");
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+
+class ParallelTest {
+	/*
+	 * The parallel bands give the same stego image as the serial scan for the same seed, whatever the number of threads
+	 * [the parallel streams run in a ForkJoinPool of 1, 2 and 4 threads].
+	 */
+
+	static PixelPlanes cover(int width, int height, boolean isGrayscale, long seed) {
+		// Random samples [all values, 0 and 255 too]; several bands of CreateStego.BAND_ROWS rows and a partial last band
+		byte[] samples = new byte[width*height*(isGrayscale ? 1 : 3)];
+		new SplittableRandom(seed).nextBytes(samples);
+		return PixelPlanes.wrap(samples, width, height, isGrayscale);
+	}
+
+	static byte[] embed(String method, PixelPlanes cover, int MessageLength, long seed, boolean ExactLength, boolean Parallel, int threads) throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try{
+			return pool.submit(() -> Steganography.embed(method, cover, MessageLength, new SplittableRandom(seed), ExactLength, Parallel).stego.samples).get();
+		}
+		finally{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void parallelBandsEqualTheSerialScan() throws Exception {
+		for (boolean isGrayscale : new boolean[] {true, false}){
+			PixelPlanes cover = cover(301, 3*CreateStego.BAND_ROWS + 17, isGrayscale, 21);
+			int samples = cover.samples.length;
+			for (String method : new String[] {"LSB", "LSBM", "LSBMR"}){
+				for (boolean ExactLength : new boolean[] {false, true}){
+					for (int MessageLength : new int[] {samples / 100, samples / 2}){
+						String name = method + (isGrayscale ? " gray" : " color") + (ExactLength ? " exact " : " ") + MessageLength;
+						byte[] serial = embed(method, cover, MessageLength, 1234, ExactLength, false, 1);
+						assertFalse(Arrays.equals(cover.samples, serial), name);
+						for (int threads : new int[] {1, 2, 4})
+							assertArrayEquals(serial, embed(method, cover, MessageLength, 1234, ExactLength, true, threads), name + ", " + threads + " threads");
+					}
+				}
+			}
+		}
+	}
+}
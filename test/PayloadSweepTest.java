@@ -0,0 +1,57 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+
+class PayloadSweepTest {
+
+	@Test
+	void payloadsAreNestedAndExact() {
+		// The message lengths are not sorted [the results are in the order of MessageLengths]
+		int[] MessageLengths = {20000, 1000, 60000, 5000};
+		for (boolean isGrayscale : new boolean[] {true, false}){
+			PixelPlanes cover = ParallelTest.cover(301, 200, isGrayscale, 8);
+			byte[] cover_samples = cover.samples.clone();
+			for (String method : new String[] {"LSB", "LSBM", "LSBMR"}){
+				String name = method + (isGrayscale ? " gray" : " color");
+				List<EmbeddingResult> results = PayloadSweep.embed(method, cover, MessageLengths, new SplittableRandom(1234));
+				assertArrayEquals(cover_samples, cover.samples, name + ": the cover is not changed");
+				for (int i = 0; i < MessageLengths.length; i++){
+					assertEquals(MessageLengths[i], results.get(i).messageLength, name);
+					assertEquals(MessageLengths[i], results.get(i).embeddedBits, name);
+				}
+				// Every change of a smaller payload is a change of every larger payload, with the same stego value
+				for (int small = 0; small < MessageLengths.length; small++){
+					for (int large = 0; large < MessageLengths.length; large++){
+						if (MessageLengths[small] >= MessageLengths[large])
+							continue;
+						byte[] small_samples = results.get(small).stego.samples;
+						byte[] large_samples = results.get(large).stego.samples;
+						int changed = 0;
+						for (int position = 0; position < cover_samples.length; position++){
+							if (small_samples[position] != cover_samples[position]){
+								assertEquals(small_samples[position], large_samples[position], name + " " + MessageLengths[small] + " in " + MessageLengths[large] + ", sample " + position);
+								changed++;
+							}
+						}
+						assertTrue(changed > 0, name);
+						assertTrue(results.get(small).totalChangedSamples() < results.get(large).totalChangedSamples(), name);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+
+class SteganalysisTest {
+	/*
+	 * The detectors on a smooth cover with Gaussian noise and on its LSB stego image with every sample used
+	 * [embedding rate 1 bit per sample].
+	 */
+
+	static PixelPlanes cover(boolean isGrayscale) {
+		// Smooth waves with a little noise, like a photograph: the histogram is not flat, so the pairs (2k, 2k+1) are not balanced
+		int width = 320, height = 240, channels = isGrayscale ? 1 : 3;
+		byte[] samples = new byte[width*height*channels];
+		SplittableRandom rand = new SplittableRandom(3);
+		for (int y = 0; y < height; y++){
+			for (int x = 0; x < width; x++){
+				for (int channel = 0; channel < channels; channel++){
+					double value = 120 + 20*channel + 60*Math.sin(x/23.0 + channel)*Math.cos(y/31.0) + 1.5*rand.nextGaussian();
+					samples[(y*width + x)*channels + channel] = (byte) Math.max(0, Math.min(255, (int) Math.round(value)));
+				}
+			}
+		}
+		return PixelPlanes.wrap(samples, width, height, isGrayscale);
+	}
+
+	@Test
+	void coverIsCleanAndLSBIsDetected() {
+		for (boolean isGrayscale : new boolean[] {true, false}){
+			PixelPlanes cover = cover(isGrayscale);
+			int samples = cover.samples.length;
+			// Every sample used [the chi-square attack] and half of the samples [RS is not stable close to rate 1]
+			PixelPlanes full = Steganography.embed("LSB", cover, samples, new SplittableRandom(1234), true, false).stego;
+			PixelPlanes half = Steganography.embed("LSB", cover, samples / 2, new SplittableRandom(1234), true, false).stego;
+			Steganalysis cover_scores = Steganalysis.analyze(cover, false);
+			Steganalysis full_scores = Steganalysis.analyze(full, false);
+			Steganalysis half_scores = Steganalysis.analyze(half, false);
+			for (int channel = 0; channel < cover.channels; channel++){
+				String name = (isGrayscale ? "gray" : "color") + ", channel " + channel;
+				assertTrue(cover_scores.chiSquare[channel] < 0.5, name + ": chi-square of the cover " + cover_scores.chiSquare[channel]);
+				assertTrue(full_scores.chiSquare[channel] > 0.9, name + ": chi-square of the full stego image " + full_scores.chiSquare[channel]);
+				assertTrue(Math.abs(cover_scores.rs[channel]) < 0.1, name + ": RS of the cover " + cover_scores.rs[channel]);
+				assertEquals(0.5, half_scores.rs[channel], 0.15, name + ": RS of the half stego image");
+				assertTrue(Math.abs(cover_scores.spa[channel]) < 0.1, name + ": SPA of the cover " + cover_scores.spa[channel]);
+				assertEquals(0.5, half_scores.spa[channel], 0.15, name + ": SPA of the half stego image");
+				assertTrue(full_scores.spa[channel] > 0.7, name + ": SPA of the full stego image " + full_scores.spa[channel]);
+			}
+		}
+	}
+
+	@Test
+	void parallelBandsEqualTheSerialAnalysis() throws Exception {
+		for (boolean isGrayscale : new boolean[] {true, false}){
+			PixelPlanes image = Steganography.embed("LSBM", cover(isGrayscale), 20000, new SplittableRandom(5), false, false).stego;
+			Steganalysis serial = Steganalysis.analyze(image, false);
+			for (int threads : new int[] {1, 2, 4}){
+				ForkJoinPool pool = new ForkJoinPool(threads);
+				try{
+					Steganalysis parallel = pool.submit(() -> Steganalysis.analyze(image, true)).get();
+					assertArrayEquals(serial.chiSquare, parallel.chiSquare);
+					assertArrayEquals(serial.rs, parallel.rs);
+					assertArrayEquals(serial.spa, parallel.spa);
+				}
+				finally{
+					pool.shutdown();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of the CreateStego project [see CreateStego.java for the citation and copyright notes].
+ *
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+ */
+
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import org.junit.jupiter.api.Test;
+
+
+class SteganographyTest {
+
+	private static PixelPlanes cover(boolean isGrayscale) {
+		// A 301x200 image with all values [0 and 255 too, for the boundary rules]
+		int channels = isGrayscale ? 1 : 3;
+		byte[] samples = new byte[301*200*channels];
+		SplittableRandom rand = new SplittableRandom(7);
+		for (int i = 0; i < samples.length; i++)
+			samples[i] = (byte) rand.nextInt(256);
+		return PixelPlanes.wrap(samples, 301, 200, isGrayscale);
+	}
+
+	private static final class CountingLSBKernel extends LSBKernel {
+		final LSBKernel kernel;
+		int rows;
+
+		CountingLSBKernel(LSBKernel kernel) {
+			this.kernel = kernel;
+		}
+
+		@Override
+		int embed(byte[] samples, int start, int length, float Probability, RandomGenerator rand) {
+			rows++;
+			return super.embed(samples, start, length, Probability, rand);
+		}
+
+		@Override
+		void apply(byte[] samples, int start, byte[] select, byte[] bits, int length) {
+			kernel.apply(samples, start, select, bits, length);
+		}
+	}
+
+	private static final class CountingLSBMKernel extends LSBMKernel {
+		final LSBMKernel kernel;
+		int rows;
+
+		CountingLSBMKernel(LSBMKernel kernel) {
+			this.kernel = kernel;
+		}
+
+		@Override
+		int embed(byte[] samples, int start, int length, float Probability, RandomGenerator rand) {
+			rows++;
+			return super.embed(samples, start, length, Probability, rand);
+		}
+
+		@Override
+		void apply(byte[] samples, int start, byte[] select, byte[] flip, byte[] direction, int length) {
+			kernel.apply(samples, start, select, flip, direction, length);
+		}
+	}
+
+	@Test
+	void lsbUsesTheVectorKernelWithoutReport() {
+		assumeTrue(LSBKernel.VECTOR != null, "jdk.incubator.vector is not available");
+		LSBKernel vector = LSBKernel.VECTOR;
+		CountingLSBKernel counting = new CountingLSBKernel(vector);
+		LSBKernel.VECTOR = counting;
+		try{
+			PixelPlanes cover = cover(false);
+			EmbeddingResult result = Steganography.embed("LSB", cover, 20000, new SplittableRandom(1234), false, false);
+			assertEquals(200, counting.rows);
+
+			// With the statistics the scalar path is used, and the stego image is the same
+			counting.rows = 0;
+			EmbeddingResult reported = Steganography.embed("LSB", cover, 20000, new SplittableRandom(1234), false, false, true, false);
+			assertEquals(0, counting.rows);
+			assertArrayEquals(reported.stego.samples, result.stego.samples);
+			assertEquals(reported.embeddedBits, result.embeddedBits);
+			assertArrayEquals(reported.changedSamples(), result.changedSamples());
+			assertEquals(reported.report().sse(), result.report().sse());
+		}
+		finally{
+			LSBKernel.VECTOR = vector;
+		}
+	}
+
+	@Test
+	void lsbmUsesTheVectorKernelWithoutReport() {
+		assumeTrue(LSBMKernel.VECTOR != null, "jdk.incubator.vector is not available");
+		LSBMKernel vector = LSBMKernel.VECTOR;
+		CountingLSBMKernel counting = new CountingLSBMKernel(vector);
+		LSBMKernel.VECTOR = counting;
+		try{
+			PixelPlanes cover = cover(true);
+			EmbeddingResult result = Steganography.embed("LSBM", cover, 20000, new SplittableRandom(1234), false, false);
+			assertEquals(200, counting.rows);
+
+			counting.rows = 0;
+			EmbeddingResult reported = Steganography.embed("LSBM", cover, 20000, new SplittableRandom(1234), false, false, true, false);
+			assertEquals(0, counting.rows);
+			assertArrayEquals(reported.stego.samples, result.stego.samples);
+			assertArrayEquals(reported.changedSamples(), result.changedSamples());
+		}
+		finally{
+			LSBMKernel.VECTOR = vector;
+		}
+	}
+
+	@Test
+	void reportOnDemandMatchesDistortion() {
+		PixelPlanes cover = cover(false);
+		EmbeddingResult result = Steganography.embed("LSBMR", cover, 30000, new SplittableRandom(99), false, false);
+		Distortion distortion = Distortion.measure(cover, result.stego, false);
+		assertEquals(distortion.totalChangedSamples(), result.totalChangedSamples());
+		assertEquals(distortion.sse(), result.report().sse());
+		assertNull(result.changeMap());
+	}
+}